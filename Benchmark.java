@@ -0,0 +1,219 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+
+public class Benchmark {
+
+	// Buffer sizes compared on generated files
+	protected static final int[] BUFFER_SIZES = { 4096, 16384, 65536, 1 << 20 };
+
+	/**
+	 * Interface for a measured operation.
+	 */
+
+	protected interface Task {
+		long run() throws Exception;
+		}
+
+	/**
+	 * Best time over several passes, with the allocation and garbage
+	 * collection of the last pass.
+	 */
+
+	protected static class Result {
+		double seconds = Double.MAX_VALUE;
+		long rows = 0;
+		long allocated = -1;
+		long gcCount = 0;
+		long gcMillis = 0;
+		}
+
+	/**
+	 * Compare read throughput of each ReadMode over an existing file, or
+	 * generate a file and measure the reader at several buffer sizes and
+	 * the record with a no-op consumer in place of SQLServerBulkCopy.
+	 * Arguments: fileName [encoding] [bufferSize] [passes]
+	 *        or: -generate rows [passes] [columns] [colDelimiter] [nullDensity] [multibyte]
+	 * @param args	Command line arguments
+	 */
+
+	public static void main(String[] args) {
+
+		try {
+
+			if (args[0].equals ("-generate")) {
+				generated (args);
+				return;
+				}
+
+			String fileName = args[0];
+			String encoding = (args.length > 1) ? args[1] : "UTF-8";
+			int bufferSize = (args.length > 2) ? Integer.parseInt(args[2]) : 4096;
+			int passes = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+			long size = new File(fileName).length();
+
+			for (ReadMode mode: ReadMode.values()) {
+
+				// First pass warms up the JIT and the page cache.
+				double best = 0;
+				long rows = 0;
+				for (int pass=0; pass<=passes; ++pass) {
+					long start = System.nanoTime();
+					rows = readAll (fileName,encoding,bufferSize,mode);
+					double seconds = (System.nanoTime() - start) / 1e9;
+					if (pass > 0) best = Math.max (best,size / seconds);
+					}
+
+				System.out.println (String.format ("%-8s rows=%d bytes=%d best=%.1f MB/s",mode,rows,size,best / (1 << 20)));
+				}
+
+			// STREAM through the JDK decoder, for comparison
+			double best = 0;
+			long rows = 0;
+			for (int pass=0; pass<=passes; ++pass) {
+				long start = System.nanoTime();
+				rows = readAll (fileName,encoding,bufferSize,null);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				if (pass > 0) best = Math.max (best,size / seconds);
+				}
+			System.out.println (String.format ("%-8s rows=%d bytes=%d best=%.1f MB/s","JDK",rows,size,best / (1 << 20)));
+
+			}
+
+		catch (Exception ex) {
+			System.out.println(ex.getMessage());
+			if (ex.getCause() != null) System.err.println (ex.getCause().getMessage());
+			}
+		}
+
+	/**
+	 * Generate a file with FileGenerator, then measure BufferedReaderDelimited
+	 * alone at each buffer size and ReadMode, and the record through next()
+	 * and getRowData() in each ReadMode, with and without reuseRows().
+	 * Allocation is measured on the calling thread, so covers the
+	 * sequential modes only.
+	 */
+
+	protected static void generated (String[] args) throws Exception {
+
+		long rows = Long.parseLong (args[1]);
+		int passes = (args.length > 2) ? Integer.parseInt (args[2]) : 5;
+		FileGenerator generator = new FileGenerator().rows (rows);
+		if (args.length > 3) generator.columns (args[3]);
+		if (args.length > 4) generator.colDelimiter (args[4]);
+		if (args.length > 5) generator.nullDensity (Double.parseDouble (args[5]));
+		if (args.length > 6) generator.multibyte (Double.parseDouble (args[6]));
+
+		File file = File.createTempFile ("Benchmark",".txt");
+		file.deleteOnExit();
+		String fileName = file.getPath();
+		long size = generator.write (fileName);
+		System.out.println (String.format ("file rows=%d bytes=%d columns=%s",rows,size,generator.columns));
+
+		for (int bufferSize: BUFFER_SIZES) {
+			for (ReadMode mode: ReadMode.values()) {
+				Result r = measure (passes,() -> readAll (fileName,"UTF-8",bufferSize,mode));
+				report ("reader " + mode + " buffer=" + bufferSize,r,size);
+				}
+			}
+
+		for (ReadMode mode: ReadMode.values()) {
+			Result r = measure (passes,() -> loadAll (generator.record (fileName).readMode (mode).bufferSize (65536)));
+			report ("record " + mode,r,size);
+			}
+
+		for (ReadMode mode: ReadMode.values()) {
+			Result r = measure (passes,() -> loadAll (generator.record (fileName).readMode (mode).bufferSize (65536).reuseRows()));
+			report ("record " + mode + " reuse",r,size);
+			}
+
+		file.delete();
+		}
+
+	/**
+	 * Run a task, keeping the best time. The first pass warms up the JIT and
+	 * the page cache.
+	 */
+
+	protected static Result measure (int passes,Task task) throws Exception {
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocation = (threads instanceof com.sun.management.ThreadMXBean) ? (com.sun.management.ThreadMXBean) threads : null;
+		long id = Thread.currentThread().getId();
+		Result result = new Result();
+
+		for (int pass=0; pass<=passes; ++pass) {
+			long allocated = (allocation == null) ? 0 : allocation.getThreadAllocatedBytes (id);
+			long gcCount = 0, gcMillis = 0;
+			for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) {
+				gcCount -= gc.getCollectionCount();
+				gcMillis -= gc.getCollectionTime();
+				}
+
+			long start = System.nanoTime();
+			result.rows = task.run();
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			if (allocation != null) result.allocated = allocation.getThreadAllocatedBytes (id) - allocated;
+			for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) {
+				gcCount += gc.getCollectionCount();
+				gcMillis += gc.getCollectionTime();
+				}
+			result.gcCount = gcCount;
+			result.gcMillis = gcMillis;
+			if (pass > 0) result.seconds = Math.min (result.seconds,seconds);
+			}
+
+		return result;
+		}
+
+	protected static void report (String name,Result r,long size) {
+		System.out.println (String.format ("%-30s rows=%d best=%.1f MB/s %.0f rows/s alloc=%.1f B/row gc=%d (%d ms)",
+			name,r.rows,size / r.seconds / (1 << 20),r.rows / r.seconds,(r.allocated < 0) ? Double.NaN : (double) r.allocated / Math.max (1,r.rows),r.gcCount,r.gcMillis));
+		}
+
+	/**
+	 * Read every row of a record as SQLServerBulkCopy would, with a consumer
+	 * that only looks at each value.
+	 * @return Number of rows read
+	 */
+
+	protected static long loadAll (SQLServerBulkRecordDelimited record) throws Exception {
+		long rows = 0;
+		long nulls = 0;
+		try (SQLServerBulkRecordDelimited r = record.open()) {
+			while (r.next()) {
+				for (Object o: r.getRowData()) if (o == null) ++nulls;
+				++rows;
+				}
+			}
+		return (nulls < 0) ? -1 : rows;
+		}
+
+	/**
+	 * Read every line of a file with BufferedReaderDelimited, in STREAM mode
+	 * through InputStreamReader when mode is null.
+	 * @return Number of lines read
+	 */
+
+	protected static long readAll (String fileName,String encoding,int bufferSize,ReadMode mode) throws Exception {
+		try (FileInputStream fis = new FileInputStream (fileName)) {
+			BufferedReaderDelimited reader;
+			if (mode == null) reader = new BufferedReaderDelimited (new InputStreamReader (fis,encoding),bufferSize);
+			else if (mode == ReadMode.STREAM) reader = new BufferedReaderDelimited (new DecodingReader (fis,Charset.forName(encoding)),bufferSize);
+			else reader = new BufferedReaderDelimited (fis.getChannel(),Charset.forName(encoding),bufferSize,mode == ReadMode.MAPPED);
+			reader.setDelimiter ("\n");
+			long rows = 0;
+			while (reader.readRow() != null) ++rows;
+			reader.close();
+			return rows;
+			}
+		}
+
+	}
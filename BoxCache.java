@@ -0,0 +1,144 @@
+package SQLServerBulkRecordDelimited;
+
+import java.math.BigDecimal;
+
+/**
+ * Shared boxes for common column values, used by reuseRows() so that
+ * repeated values do not create an object per row. Integer, Short and Long
+ * values from MIN to MAX come from tables built on first use, a wider range
+ * than the JDK's own -128 to 127, covering codes, counts and years. BIT
+ * values are the JDK's shared Integers for 0 and 1.
+ *
+ * An instance caches the decimals of one column, looked up by unscaled
+ * value and scale in a direct-mapped table. Entries are immutable and
+ * replaced whole, so a racing lookup sees either the old or the new entry.
+ */
+
+public class BoxCache {
+
+	// Range of the shared Integer, Short and Long tables
+	public static final int MIN = -128;
+	public static final int MAX = 4095;
+
+	protected static class Integers {
+		static final Integer[] VALUES = new Integer[MAX - MIN + 1];
+		static {
+			for (int i=0; i<VALUES.length; ++i) VALUES[i] = Integer.valueOf (i + MIN);
+			}
+		}
+
+	protected static class Shorts {
+		static final Short[] VALUES = new Short[MAX - MIN + 1];
+		static {
+			for (int i=0; i<VALUES.length; ++i) VALUES[i] = Short.valueOf ((short) (i + MIN));
+			}
+		}
+
+	protected static class Longs {
+		static final Long[] VALUES = new Long[MAX - MIN + 1];
+		static {
+			for (int i=0; i<VALUES.length; ++i) VALUES[i] = Long.valueOf (i + MIN);
+			}
+		}
+
+	/**
+	 * @param v	Value
+	 * @return Shared Integer for values in range, otherwise a new one
+	 */
+
+	public static Integer integer (int v) {
+		return (v >= MIN && v <= MAX) ? Integers.VALUES[v - MIN] : Integer.valueOf (v);
+		}
+
+	/**
+	 * @param v	Value
+	 * @return Shared Short for values in range, otherwise a new one
+	 */
+
+	public static Short shortValue (short v) {
+		return (v >= MIN && v <= MAX) ? Shorts.VALUES[v - MIN] : Short.valueOf (v);
+		}
+
+	/**
+	 * @param v	Value
+	 * @return Shared Long for values in range, otherwise a new one
+	 */
+
+	public static Long longValue (long v) {
+		return (v >= MIN && v <= MAX) ? Longs.VALUES[(int) v - MIN] : Long.valueOf (v);
+		}
+
+	protected static final class Entry {
+		final long unscaled;
+		final BigDecimal value;
+
+		Entry (long unscaled,BigDecimal value) {
+			this.unscaled = unscaled;
+			this.value = value;
+			}
+		}
+
+	protected final Entry[] entries;
+	protected final int mask;
+
+	protected long hits = 0;
+	protected long misses = 0;
+
+	/**
+	 * Create a decimal cache for a column.
+	 * @param maxEntries	Capacity, rounded up to a power of two
+	 */
+
+	public BoxCache (int maxEntries) {
+		if (maxEntries < 1) throw new IllegalArgumentException ("maxEntries < 1");
+		int size = Integer.highestOneBit (maxEntries * 2 - 1);
+		this.entries = new Entry[size];
+		this.mask = size - 1;
+		}
+
+	/**
+	 * Get the shared BigDecimal for an unscaled value, adding it to the
+	 * cache if not present. A column has one scale, which is checked in
+	 * case the cache is used for another.
+	 * @param unscaled	Unscaled value
+	 * @param scale		Scale
+	 * @return BigDecimal.valueOf(unscaled,scale), shared
+	 */
+
+	public BigDecimal decimal (long unscaled,int scale) {
+		long h = unscaled * 0x9e3779b97f4a7c15L;
+		int i = (int) (h ^ (h >>> 32)) & mask;
+		Entry e = entries[i];
+		if (e != null && e.unscaled == unscaled && e.value.scale() == scale) {
+			++ hits;
+			return e.value;
+			}
+		++ misses;
+		BigDecimal value = BigDecimal.valueOf (unscaled,scale);
+		entries[i] = new Entry (unscaled,value);
+		return value;
+		}
+
+	/**
+	 * @return Number of decimals found in the cache
+	 */
+
+	public long getHits() {
+		return hits;
+		}
+
+	/**
+	 * @return Number of decimals created
+	 */
+
+	public long getMisses() {
+		return misses;
+		}
+
+	@Override
+	public String toString() {
+		long total = hits + misses;
+		return String.format ("capacity=%d hits=%d misses=%d hitRate=%.3f",entries.length,hits,misses,(total == 0) ? 0 : (double) hits / total);
+		}
+
+	}
@@ -3,6 +3,16 @@ package SQLServerBulkRecordDelimited;
 
 import java.io.Reader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 
 public class BufferedReaderDelimited {
 	
@@ -28,6 +38,63 @@ public class BufferedReaderDelimited {
 	// Default output line size
     protected static int LINESIZE = 1024;
 
+	// Channel input, used in place of reader for CHANNEL and MAPPED modes.
+	// A sequential source channel is read the same way as CHANNEL mode.
+	protected FileChannel channel;
+	protected ReadableByteChannel source;
+	protected ByteBuffer bytes;
+	protected CharsetDecoder decoder;
+	protected CharBuffer chars;
+	protected boolean mapped = false;
+	protected boolean endOfInput = false;
+	protected boolean flushed = false;
+
+	// Decode path for the character set, see DecodingReader. ISO-8859-1 and
+	// UTF-16LE are decoded straight from the byte buffer.
+	protected int decodeKind = DecodingReader.DECODER;
+	protected byte[] latin1;
+
+	// File offset of the current mapped window
+	protected long mapPosition;
+
+	// File offset of the next channel read, and end of the range to be read
+	protected long channelPosition;
+	protected long channelEnd;
+
+	// Size of direct byte buffer for CHANNEL mode, and mapping window for MAPPED mode
+	protected static int CHANNEL_BUFSIZE = 1 << 20;
+	protected static long MAP_WINDOW = 1L << 26;
+
+	// Byte-level row scanning, used in channel modes when the encoding is
+	// ASCII-compatible and the row delimiter is ASCII
+	protected boolean asciiCompatible = false;
+	protected boolean byteScan = false;
+	protected byte[] byteDelimiter;
+	protected long byteDelimiterPattern;
+
+	// Scratch space used to turn a row of bytes into a String
+	protected byte[] rowBytes;
+	protected ByteBuffer rowByteBuffer;
+	protected CharBuffer rowChars;
+
+	// Metrics to receive read counts and wait times, null if not wanted
+	protected LoadMetrics metrics = null;
+
+	// Length of fixed-length records in characters, read without a
+	// delimiter, 0 for delimited lines
+	protected int recordLength = 0;
+	protected char[] record;
+
+	// Offset in the input of the last line returned, -1 if not known
+	protected long lineOffset = -1;
+
+	// View of the last row returned by readRow()
+	protected RowView view = new RowView();
+
+	// SWAR constants, testing eight bytes at a time in a long
+	protected static final long ONES = 0x0101010101010101L;
+	protected static final long HIGHS = 0x8080808080808080L;
+
 	/**
 	* Construct DelimitedReader with user-defined buffer size
 	*
@@ -51,14 +118,134 @@ public class BufferedReaderDelimited {
     public BufferedReaderDelimited(Reader reader) {
         this (reader,BUFSIZE);
     	}
+
+	/**
+	* Construct DelimitedReader over a file channel, decoding directly into
+	* the buffer without a Reader stack.
+	*
+	* @param  channel  File channel, read from its current position
+	* @param  charset  Character set of the file
+	* @param  bufsize  Character buffer size
+	* @param  mapped   Memory-map the file rather than reading into a direct buffer
+	 * @throws java.io.IOException
+	*/
+
+	public BufferedReaderDelimited(FileChannel channel, Charset charset, int bufsize, boolean mapped) throws IOException {
+		this (channel,charset,bufsize,mapped,channel.position(),Long.MAX_VALUE);
+		}
+
+	/**
+	* Construct DelimitedReader over a byte range of a file channel. Reads are
+	* positional, so several readers may share one channel.
+	*
+	* @param  channel  File channel
+	* @param  charset  Character set of the file
+	* @param  bufsize  Character buffer size
+	* @param  mapped   Memory-map the file rather than reading into a direct buffer
+	* @param  start    Offset of first byte to read
+	* @param  end      Offset one past the last byte to read
+	 * @throws java.io.IOException
+	*/
+
+	public BufferedReaderDelimited(FileChannel channel, Charset charset, int bufsize, boolean mapped, long start, long end) throws IOException {
+		if (bufsize < 1024) throw new IllegalArgumentException("bufsize < 1024");
+		this.channel = channel;
+		this.mapped = mapped;
+		this.decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		buf = new char[bufsize];
+		chars = CharBuffer.wrap(buf);
+		bufIndex = 0;
+		channelPosition = start;
+		channelEnd = Math.min(end, channel.size());
+
+		// Start with an empty byte buffer, the first fill() reads or maps the data.
+		if (mapped) {
+			bytes = ByteBuffer.allocate(0);
+			mapPosition = start;
+			}
+		else {
+			bytes = ByteBuffer.allocateDirect(Math.max(bufsize, CHANNEL_BUFSIZE));
+			bytes.flip();
+			}
+		bytes.order(ByteOrder.LITTLE_ENDIAN);
+		this.asciiCompatible = isAsciiCompatible(charset);
+		this.decodeKind = DecodingReader.kind(charset);
+		}
+
+	/**
+	* Construct DelimitedReader over a sequential channel, such as the output
+	* of a decompressor. Bytes are read into a direct buffer as in CHANNEL mode.
+	*
+	* @param  source   Channel to read until end of stream
+	* @param  charset  Character set of the data
+	* @param  bufsize  Character buffer size
+	*/
+
+	public BufferedReaderDelimited(ReadableByteChannel source, Charset charset, int bufsize) {
+		this (source,charset,bufsize,0);
+		}
+
+	/**
+	* Construct DelimitedReader over a sequential channel that has already
+	* been advanced past the start of the data.
+	*
+	* @param  source    Channel to read until end of stream
+	* @param  charset   Character set of the data
+	* @param  bufsize   Character buffer size
+	* @param  position  Offset of the first byte in the data, for getLineOffset()
+	*/
+
+	public BufferedReaderDelimited(ReadableByteChannel source, Charset charset, int bufsize, long position) {
+		if (bufsize < 1024) throw new IllegalArgumentException("bufsize < 1024");
+		this.source = source;
+		this.decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		buf = new char[bufsize];
+		chars = CharBuffer.wrap(buf);
+		bufIndex = 0;
+		channelPosition = position;
+		channelEnd = Long.MAX_VALUE;
+		bytes = ByteBuffer.allocateDirect(Math.max(bufsize, CHANNEL_BUFSIZE));
+		bytes.flip();
+		bytes.order(ByteOrder.LITTLE_ENDIAN);
+		this.asciiCompatible = isAsciiCompatible(charset);
+		this.decodeKind = DecodingReader.kind(charset);
+		}
+
+	/**
+	* Test whether ASCII characters encode as the same single bytes and can
+	* never appear inside a multi-byte sequence, so that row boundaries can be
+	* found on raw bytes. True for UTF-8, US-ASCII and single-byte encodings.
+	*
+	* @param  charset  Character set of the file
+	* @return true if delimiters can be matched on bytes
+	*/
+
+	public static boolean isAsciiCompatible(Charset charset) {
+		if (charset.equals(StandardCharsets.UTF_8)) return true;
+		if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f) return false;
+		byte[] ascii = new byte[128];
+		for (int i=0; i<128; ++i) ascii[i] = (byte) i;
+		String s = new String(ascii, charset);
+		if (s.length() != 128) return false;
+		for (int i=0; i<128; ++i) if (s.charAt(i) != i) return false;
+		return true;
+		}
     	
     /**
     * Close BufferedReaderDelimited
     */
 
     public void close() {
-        if (reader == null) return;
+        if (reader == null && channel == null && source == null) return;
         reader = null;
+        channel = null;
+        source = null;
+        bytes = null;
+        chars = null;
         buf = null;
     	}
     	
@@ -68,9 +255,191 @@ public class BufferedReaderDelimited {
 	*/
 	
     protected void fill() throws IOException {
-		bufLength = reader.read(buf, 0, buf.length);
+		bufLength = readChars(0);
  		bufIndex = 0;
 		}
+
+	/**
+	* Keep the characters not yet returned, moved to the start of the buffer,
+	* and read more after them. The buffer is doubled when they fill it.
+	*
+	* @return false at end of input
+	 * @throws java.io.IOException
+	*/
+
+	protected boolean fillMore() throws IOException {
+		int keep = Math.max(0, bufLength - bufIndex);
+		if (buf.length - keep < 2) {
+			buf = java.util.Arrays.copyOfRange(buf, bufIndex, bufIndex + buf.length * 2);
+			if (chars != null) chars = CharBuffer.wrap(buf);
+			}
+		else if (keep > 0 && bufIndex > 0) System.arraycopy(buf, bufIndex, buf, 0, keep);
+		bufIndex = 0;
+		bufLength = keep;
+		int n = readChars(keep);
+		if (n <= 0) return false;
+		bufLength += n;
+		return true;
+		}
+
+	/**
+	* Read characters into the buffer after those it holds.
+	*
+	* @param  at  Index of the first character to read
+	* @return Number of characters read, or -1 at end of input
+	 * @throws java.io.IOException
+	*/
+
+	protected int readChars(int at) throws IOException {
+		if (channel != null || source != null) return readChannel(at);
+		if (metrics == null) return reader.read(buf, at, buf.length - at);
+		long start = System.nanoTime();
+		int n = reader.read(buf, at, buf.length - at);
+		metrics.fill(n, System.nanoTime() - start);
+		return n;
+		}
+
+	/**
+	* Read the first block of input ahead of the first readLine(), so that a
+	* file opened in the background is ready to be read. Does nothing once
+	* input has been read.
+	 * @throws java.io.IOException
+	*/
+
+	public void prefetch() throws IOException {
+		if (byteScan) {
+			if (!bytes.hasRemaining() && !endOfInput) readBytes();
+			}
+		else if (bufIndex >= bufLength) fill();
+		}
+
+	/**
+	* Read characters into the buffer by decoding bytes from the channel.
+	*
+	* @param  at  Index of the first character to read
+	* @return Number of characters read, or -1 at end of input
+	 * @throws java.io.IOException
+	*/
+
+	protected int readChannel(int at) throws IOException {
+		if (decodeKind == DecodingReader.LATIN1 || decodeKind == DecodingReader.UTF16LE) return readDirect(at);
+		chars.clear();
+		chars.position(at);
+
+		// Decode until we have some characters or the input is exhausted.
+		while (!flushed) {
+			CoderResult result = decoder.decode(bytes, chars, endOfInput);
+			if (result.isError()) result.throwException();
+			if (result.isOverflow() || chars.position() > at) break;
+			if (endOfInput) {
+				decoder.flush(chars);
+				flushed = true;
+				break;
+				}
+			readBytes();
+			}
+
+		return (chars.position() > at) ? chars.position() - at : -1;
+		}
+
+	/**
+	* Read characters from the channel without the decoder, widening each
+	* byte of ISO-8859-1 or copying the chars of UTF-16LE in bulk through a
+	* little-endian view of the byte buffer. An odd byte at the end of
+	* UTF-16LE input is read as U+FFFD.
+	 * @throws java.io.IOException
+	*/
+
+	protected int readDirect(int at) throws IOException {
+		int width = (decodeKind == DecodingReader.UTF16LE) ? 2 : 1;
+		while (bytes.remaining() < width && !endOfInput) readBytes();
+		int n = Math.min(buf.length - at, bytes.remaining() / width);
+		if (width == 1) {
+			if (latin1 == null || latin1.length < n) latin1 = new byte[buf.length];
+			bytes.get(latin1, 0, n);
+			for (int i=0; i<n; ++i) buf[at + i] = (char) (latin1[i] & 0xff);
+			}
+		else {
+			bytes.asCharBuffer().get(buf, at, n);
+			bytes.position(bytes.position() + 2 * n);
+			if (n == 0 && bytes.hasRemaining()) {
+				bytes.position(bytes.limit());
+				buf[at + n++] = '\uFFFD';
+				}
+			}
+		return (n > 0) ? n : -1;
+		}
+
+	/**
+	* Make more bytes available to the decoder, timing the wait if metrics
+	* are wanted. For a mapped file only the mapping is timed, page faults
+	* are taken as the rows are scanned.
+	 * @throws java.io.IOException
+	*/
+
+	protected void readBytes() throws IOException {
+		if (metrics == null) {
+			readInput();
+			return;
+			}
+		long start = System.nanoTime();
+		long end = inputEnd();
+		readInput();
+		metrics.fill(inputEnd() - end, System.nanoTime() - start);
+		}
+
+	/**
+	* Offset one past the last byte in the byte buffer.
+	*/
+
+	protected long inputEnd() {
+		return mapped ? mapPosition + bytes.limit() : channelPosition;
+		}
+
+	/**
+	* Make more bytes available to the decoder, either by reading into the
+	* direct buffer or by mapping the next window of the file.
+	 * @throws java.io.IOException
+	*/
+
+	protected void readInput() throws IOException {
+		if (mapped) {
+
+			// Start the next window at the first byte not yet decoded, which
+			// may be part of a character split across windows.
+			long position = mapPosition + bytes.position();
+			long remaining = channelEnd - position;
+			if (remaining <= bytes.remaining()) {
+				endOfInput = true;
+				return;
+				}
+			long window = Math.min(Math.max(MAP_WINDOW, 2L * bytes.remaining()), Integer.MAX_VALUE);
+			bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(remaining, window));
+			bytes.order(ByteOrder.LITTLE_ENDIAN);
+			mapPosition = position;
+			}
+		else {
+
+			// Grow the buffer if a single row fills it.
+			if (bytes.position() == 0 && bytes.limit() == bytes.capacity()) {
+				ByteBuffer grown = ByteBuffer.allocateDirect(bytes.capacity() * 2);
+				grown.order(ByteOrder.LITTLE_ENDIAN);
+				grown.put(bytes);
+				grown.flip();
+				bytes = grown;
+				}
+			bytes.compact();
+			int n = -1;
+			long remaining = channelEnd - channelPosition;
+			if (remaining > 0) {
+				if (remaining < bytes.remaining()) bytes.limit(bytes.position() + (int) remaining);
+				n = (channel != null) ? channel.read(bytes, channelPosition) : source.read(bytes);
+				if (n > 0) channelPosition += n;
+				}
+			bytes.flip();
+			if (n < 0) endOfInput = true;
+			}
+		}
 		
 	/**
 	* Read line
@@ -79,71 +448,346 @@ public class BufferedReaderDelimited {
 	 * @throws java.io.IOException
 	*/
 
-     public String readLine() throws IOException {
-    	
-		StringBuffer s = null;
-		int startIndex = bufIndex;
+	public String readLine() throws IOException {
+		CharSequence row = readRow();
+		return (row == null) ? null : row.toString();
+		}
+
+	/**
+	* Read the next row as a view of the read buffer, without copying it to
+	* a String. The view is reused, so the row is only valid until the next
+	* read; call toString() to keep it. A row that runs past the end of the
+	* buffer is moved to its start before more input is read after it, and
+	* a row longer than the buffer doubles it. A fixed-length record that
+	* spans a fill is gathered in a reused array, and the view is of that.
+	*
+	* @return Row, or null on end of reader.
+	 * @throws java.io.IOException
+	*/
+
+	public CharSequence readRow() throws IOException {
+
+		if (recordLength > 0) return readRecord();
+		if (byteScan) return readRowBytes();
+
+		// Characters of the row searched so far, up to the last possible
+		// start of a delimiter cut off by the end of the buffer
+		int searched = 0;
+
+		while (true) {
+			int found = indexOfLineDelimiter(bufIndex + searched);
+			if (found >= 0) {
+				view.set(buf, bufIndex, found - bufIndex);
+				bufIndex = found + lineDelimiterLength;
+				return view;
+				}
+			searched = Math.max(0, bufLength - bufIndex - (lineDelimiterLength - 1));
+
+			// At end of input, return any remaining partial row.
+			if (!fillMore()) {
+				if (bufIndex >= bufLength) return null;
+				view.set(buf, bufIndex, bufLength - bufIndex);
+				bufIndex = bufLength;
+				return view;
+				}
+			}
+		}
+
+	/**
+	* Find the line delimiter in the character buffer.
+	*
+	* @param  from  Index to start searching
+	* @return Index of the delimiter, or -1 if not found complete before bufLength
+	*/
+
+	protected int indexOfLineDelimiter(int from) {
+		char[] b = buf;
+		char first = lineDelimiter[0];
+		int last = bufLength - lineDelimiterLength;
+		for (int i=from; i<=last; ++i) {
+			if (b[i] != first) continue;
+			int j = 1;
+			while (j < lineDelimiterLength && b[i + j] == lineDelimiter[j]) ++j;
+			if (j == lineDelimiterLength) return i;
+			}
+		return -1;
+		}
+		
+	/**
+	* Read the next fixed-length record. A short record at the end of the
+	* input is returned as it is, unless it is only line ends or spaces
+	* left after the last record.
+	*
+	* @return Record as a view, valid until the next read, or null on end
+	*         of reader.
+	 * @throws java.io.IOException
+	*/
+
+	protected CharSequence readRecord() throws IOException {
+
+		int n = 0;
 
-		while (1==1) {
+		while (true) {
 
-			// Fill the buffer if we've passed the end.
 			if (bufIndex >= bufLength) {
 				fill();
-				startIndex = 0;
+				if (bufIndex >= bufLength) {
+					for (int i=0; i<n; ++i) if (record[i] > ' ') return view.set(record, 0, n);
+					return null;
+					}
 				}
-			
-			// If we're still at the end, we've reached the end of file.
-			if (bufIndex >= bufLength) {
-				if (s != null && s.length() > 0) return s.toString();
-				else return null;
+
+			// Most records lie within the buffer and need no copy.
+			if (n == 0 && bufLength - bufIndex >= recordLength) {
+				view.set(buf, bufIndex, recordLength);
+				bufIndex += recordLength;
+				return view;
 				}
-				
-			// Step through the buffer until we find a delimiter or reach the buffer end.
-			boolean eol = false;
-			while (bufIndex < bufLength) {
-				
-				// Look for the delimiter sequence
-				boolean gotDelimiter = true;
-				if (lineDelimiterLength == 1) {
-					if (buf[bufIndex] != lineDelimiter[0]) gotDelimiter = false;
-					}
-				else {
-					for (int j=0; j<lineDelimiterLength; ++j) {
-						if (buf[bufIndex+j] != lineDelimiter[j]) {
-							gotDelimiter = false;
-							break;
-							}
-						}
-					}
-				
-				// Break if we got a valid delimiter ...	
-				if (gotDelimiter) {
-					eol = true;
+
+			int k = Math.min(recordLength - n, bufLength - bufIndex);
+			System.arraycopy(buf, bufIndex, record, n, k);
+			bufIndex += k;
+			n += k;
+			if (n == recordLength) return view.set(record, 0, n);
+			}
+		}
+
+	/**
+	* Read row by scanning raw bytes for the delimiter, decoding only the
+	* completed row.
+	*
+	* @return Row, or null on end of channel.
+	 * @throws java.io.IOException
+	*/
+
+	protected CharSequence readRowBytes() throws IOException {
+
+		int start = bytes.position();
+		int from = start;
+
+		while (true) {
+
+			int end = bytes.limit();
+			int found = indexOfDelimiter(from, end);
+			if (found >= 0) {
+				lineOffset = offsetOf(start);
+				CharSequence s = decodeRow(start, found);
+				bytes.position(found + byteDelimiter.length);
+				return s;
+				}
+
+			// At end of input, return any remaining partial row.
+			if (endOfInput) {
+				if (end <= start) return null;
+				lineOffset = offsetOf(start);
+				CharSequence s = decodeRow(start, end);
+				bytes.position(end);
+				return s;
+				}
+
+			// Keep the partial row and get more bytes. Everything up to the
+			// last possible partial delimiter has already been searched.
+			int searched = Math.max(0, end - start - (byteDelimiter.length - 1));
+			bytes.position(start);
+			readBytes();
+			start = bytes.position();
+			from = start + searched;
+			}
+		}
+
+	/**
+	* Skip a byte order mark at the start of the input, which would
+	* otherwise be read into the first column of the first row. Rows scanned
+	* as bytes skip the UTF-8 mark; decoded rows skip a leading U+FEFF,
+	* the mark in any Unicode encoding. Call before the first readLine().
+	 * @throws java.io.IOException
+	*/
+
+	public void skipBom() throws IOException {
+		if (byteScan) {
+			while (bytes.remaining() < 3 && !endOfInput) readBytes();
+			int p = bytes.position();
+			if (decodeKind == DecodingReader.UTF8 && bytes.remaining() >= 3
+				&& bytes.get(p) == (byte) 0xEF && bytes.get(p + 1) == (byte) 0xBB && bytes.get(p + 2) == (byte) 0xBF) bytes.position(p + 3);
+			}
+		else {
+			if (bufIndex >= bufLength) fill();
+			if (bufIndex < bufLength && buf[bufIndex] == '\uFEFF') ++bufIndex;
+			}
+		}
+
+	/**
+	* Offset in the input of a byte buffer index.
+	*/
+
+	protected long offsetOf(int index) {
+		return mapped ? mapPosition + index : channelPosition - bytes.limit() + index;
+		}
+
+	/**
+	* Byte offset of the start of the last line returned. Only known when
+	* rows are scanned as bytes, in CHANNEL and MAPPED modes with an
+	* ASCII-compatible encoding. For compressed input the offset is in the
+	* decompressed data.
+	*
+	* @return Offset, or -1 if not known
+	*/
+
+	public long getLineOffset() {
+		return lineOffset;
+		}
+
+	/**
+	* Byte offset of the first byte not yet returned, which is the start of
+	* the next line.
+	*
+	* @return Offset, or -1 if not known, see hasOffsets()
+	*/
+
+	public long getPosition() {
+		return byteScan ? offsetOf(bytes.position()) : -1;
+		}
+
+	/**
+	* Test whether the reader knows the byte offsets of lines.
+	*
+	* @return true if getLineOffset() and getPosition() return offsets
+	*/
+
+	public boolean hasOffsets() {
+		return byteScan;
+		}
+
+	/**
+	* Find the row delimiter in the byte buffer.
+	*
+	* @param  from  Index to start searching
+	* @param  end   Index one past the last byte available
+	* @return Index of the delimiter, or -1 if not found complete before end
+	*/
+
+	protected int indexOfDelimiter(int from, int end) {
+		int i = from;
+		while (true) {
+			int c = indexOfFirstByte(i, end);
+			if (c < 0 || c + byteDelimiter.length > end) return -1;
+			boolean match = true;
+			for (int j=1; j<byteDelimiter.length; ++j) {
+				if (bytes.get(c + j) != byteDelimiter[j]) {
+					match = false;
 					break;
 					}
-					
-				// ... otherwise keep stepping through stream
-				++ bufIndex;
-				}
-				
-			// Append the buffer to the string.
-			if (s == null) s = new StringBuffer (LINESIZE);
-			s.append(buf, startIndex, bufIndex-startIndex);
-		
-			// Return a value if we're at end of line
-			if (eol) {
-				
-				// Increment the buffer index to step past the delimiter
-				// ready for our next call to this function
-				bufIndex += lineDelimiter.length;
-				
-				// Return the string
-				return s.toString();
 				}
-				
+			if (match) return c;
+			i = c + 1;
 			}
 		}
-		
+
+	/**
+	* Find the first byte of the delimiter, testing eight bytes at a time.
+	*
+	* @param  from  Index to start searching
+	* @param  end   Index one past the last byte available
+	* @return Index of the byte, or -1 if not found
+	*/
+
+	protected int indexOfFirstByte(int from, int end) {
+		int i = from;
+
+		// A zero byte in x marks a match. The lowest flagged byte is exact.
+		for (; i + 8 <= end; i += 8) {
+			long x = bytes.getLong(i) ^ byteDelimiterPattern;
+			long t = (x - ONES) & ~x & HIGHS;
+			if (t != 0) return i + (Long.numberOfTrailingZeros(t) >>> 3);
+			}
+
+		byte b = byteDelimiter[0];
+		for (; i < end; ++i) if (bytes.get(i) == b) return i;
+		return -1;
+		}
+
+	/**
+	* Decode a range of the byte buffer into the row characters. ISO-8859-1
+	* rows and pure ASCII rows are widened directly and skip the decoder.
+	*
+	* @param  start  Index of first byte
+	* @param  end    Index one past the last byte
+	* @return Row as a view of the row characters
+	*/
+
+	protected CharSequence decodeRow(int start, int end) throws IOException {
+
+		int length = end - start;
+		if (rowBytes == null || rowBytes.length < length) {
+			rowBytes = new byte[Math.max(length, LINESIZE)];
+			rowByteBuffer = ByteBuffer.wrap(rowBytes);
+			rowChars = CharBuffer.allocate(rowBytes.length);
+			}
+
+		// Test for any high bit, eight bytes at a time.
+		boolean ascii = true;
+		if (decodeKind != DecodingReader.LATIN1) {
+			int i = start;
+			for (; i + 8 <= end && ascii; i += 8) if ((bytes.getLong(i) & HIGHS) != 0) ascii = false;
+			for (; i < end && ascii; ++i) if (bytes.get(i) < 0) ascii = false;
+			}
+
+		bytes.position(start);
+		bytes.get(rowBytes, 0, length);
+		char[] c = rowChars.array();
+		if (ascii) {
+			for (int j=0; j<length; ++j) c[j] = (char) (rowBytes[j] & 0xff);
+			return view.set(c, 0, length);
+			}
+
+		rowByteBuffer.clear().limit(length);
+		rowChars.clear();
+		decoder.reset();
+		CoderResult result = decoder.decode(rowByteBuffer, rowChars, true);
+		if (result.isError()) result.throwException();
+		decoder.flush(rowChars);
+		return view.set(c, 0, rowChars.position());
+		}
+
+	/**
+	* Enable byte-level scanning if the reader, encoding and delimiter allow it.
+	*/
+
+	protected void configureByteScan() {
+		byteScan = false;
+		if (recordLength > 0 || (channel == null && source == null) || !asciiCompatible || lineDelimiter == null || lineDelimiterLength < 1) return;
+		byteDelimiter = new byte[lineDelimiterLength];
+		for (int i=0; i<lineDelimiterLength; ++i) {
+			if (lineDelimiter[i] > 127) return;
+			byteDelimiter[i] = (byte) lineDelimiter[i];
+			}
+		byteDelimiterPattern = (byteDelimiter[0] & 0xFFL) * ONES;
+		byteScan = true;
+		}
+
+	/**
+	* Report reads and the time spent waiting for them to a LoadMetrics.
+	*
+	* @param metrics  Metrics to update, or null to stop
+	*/
+
+	public void setMetrics(LoadMetrics metrics) {
+		this.metrics = metrics;
+		}
+
+	/**
+	* Read fixed-length records in place of delimited lines. Records are
+	* counted in characters, and line offsets are not known.
+	*
+	* @param length  Record length in characters, 0 to read delimited lines
+	*/
+
+	public void setRecordLength(int length) {
+		this.recordLength = length;
+		this.record = (length > 0) ? new char[length] : null;
+		configureByteScan();
+		}
+
 	/**
 	* Set line delimiter from string.
 	*
@@ -153,6 +797,7 @@ public class BufferedReaderDelimited {
 	public void setDelimiter (String delimiter) {
 		this.lineDelimiter = delimiter.toCharArray();
 		this.lineDelimiterLength = this.lineDelimiter.length;
+		configureByteScan();
 		}
 		
 	/**
@@ -164,6 +809,7 @@ public class BufferedReaderDelimited {
 	public void setDelimiter (char[] delimiter) {
 		this.lineDelimiter = delimiter;
 		this.lineDelimiterLength = this.lineDelimiter.length;
+		configureByteScan();
 		}
 
 	}
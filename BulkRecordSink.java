@@ -0,0 +1,22 @@
+package SQLServerBulkRecordDelimited;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkRecord;
+
+/**
+ * Consumer of bulk records for ParallelBulkLoader. The default sink sends
+ * each record to SQL Server with SQLServerBulkCopy. Other sinks can stand
+ * in for the server, for example when testing.
+ */
+
+public interface BulkRecordSink {
+
+	/**
+	 * Consume every row of a record. Called concurrently, once per stream.
+	 * @param stream	Base-0 stream number
+	 * @param record	Opened record over one byte range of the file
+	 * @throws Exception 
+	 */
+
+	void write (int stream,ISQLServerBulkRecord record) throws Exception;
+
+	}
@@ -0,0 +1,297 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import com.microsoft.sqlserver.jdbc.*;
+
+/**
+ * Replay of the rows of a load from a cache file written by RowCacheWriter,
+ * for loading the same file again or into several databases without
+ * parsing it each time. The cache is only opened if every source file
+ * still has the size and modification time recorded when it was written,
+ * and only replayed for a load with the same columns and settings.
+ */
+
+public class CachedBulkRecord implements ISQLServerBulkRecord, java.lang.AutoCloseable {
+
+	protected String fileName;
+	protected DataInputStream in;
+
+	// Source files recorded in the cache, and the digest of the settings
+	protected List<String> sources = new ArrayList<>();
+	protected String settings;
+
+	// Column metadata
+	protected String[] names;
+	protected int[] types;
+	protected int[] precisions;
+	protected int[] scales;
+
+	// Current row, and rows read
+	protected byte[] nulls;
+	protected Object[] row;
+	protected long rowCount = 0;
+
+	/**
+	 * Define a replay of a cache file.
+	 * @param fileName	Cache file
+	 */
+
+	public CachedBulkRecord (String fileName) {
+		this.fileName = fileName;
+		}
+
+	/**
+	 * Open the cache and read its header, checking that the source files
+	 * are unchanged.
+	 * @return this
+	 * @throws SQLServerException if the cache is not valid or is stale
+	 */
+
+	public CachedBulkRecord open() throws SQLServerException {
+
+		try {
+			this.in = new DataInputStream (new BufferedInputStream (new FileInputStream (fileName),1 << 16));
+			if (in.readInt() != RowCacheWriter.MAGIC || in.readInt() != RowCacheWriter.VERSION) throw new IOException ("Not a row cache");
+
+			int n = in.readInt();
+			for (int i=0; i<n; ++i) {
+				String source = in.readUTF();
+				long size = in.readLong();
+				long modified = in.readLong();
+				Path p = Paths.get (source);
+				try {
+					if (Files.size (p) != size || Files.getLastModifiedTime (p).toMillis() != modified) throw new IOException ("Stale cache, " + source + " has changed");
+					}
+				catch (NoSuchFileException e) {
+					throw new IOException ("Stale cache, " + source + " no longer exists");
+					}
+				sources.add (source);
+				}
+			settings = in.readUTF();
+
+			n = in.readInt();
+			names = new String[n];
+			types = new int[n];
+			precisions = new int[n];
+			scales = new int[n];
+			for (int i=0; i<n; ++i) {
+				names[i] = in.readUTF();
+				types[i] = in.readInt();
+				precisions[i] = in.readInt();
+				scales[i] = in.readInt();
+				}
+			nulls = new byte[(n + 7) / 8];
+			}
+		catch (Exception ex) {
+			close();
+			String msg = MessageFormat.format ("File={0}, Err={1}",fileName,ex.getMessage());
+			throw new SQLServerException (msg,null,0,ex);
+			}
+
+		return this;
+		}
+
+	/**
+	 * Test whether the cache holds the rows of a load: the same source files,
+	 * the same columns, and the same settings.
+	 * @param files		Source files of the load
+	 * @param metadata	Columns of the load
+	 * @param settings	Settings of the load, as given to RowCacheWriter
+	 * @return true if the cache can stand in for the load
+	 */
+
+	public boolean matches (List<String> files,ISQLServerBulkRecord metadata,String settings) {
+		if (!RowCacheWriter.digest (settings).equals (this.settings)) return false;
+		if (files.size() != sources.size()) return false;
+		for (int i=0; i<files.size(); ++i) if (!new File (files.get (i)).getAbsolutePath().equals (sources.get (i))) return false;
+		if (metadata.getColumnOrdinals().size() != names.length) return false;
+		for (int i=0; i<names.length; ++i) {
+			if (!names[i].equals (metadata.getColumnName (i + 1))
+				|| types[i] != metadata.getColumnType (i + 1)
+				|| precisions[i] != metadata.getPrecision (i + 1)
+				|| scales[i] != metadata.getScale (i + 1)) return false;
+			}
+		return true;
+		}
+
+	/**
+	 * Close the cache file.
+	 */
+
+	@Override
+	public void close() {
+		if (in != null)
+			try {
+				in.close();
+				}
+			catch (IOException e) {
+				}
+		in = null;
+		}
+
+	/**
+	 * Get the number of rows read.
+	 * @return Rows
+	 */
+
+	public long getRowCount() {
+		return rowCount;
+		}
+
+	@Override
+	public Set<Integer> getColumnOrdinals() {
+		Set<Integer> set = new HashSet<>();
+		for (int i=0; i<names.length; ++i) set.add (i + 1);
+		return set;
+		}
+
+	@Override
+	public String getColumnName (int column) {
+		return names[column - 1];
+		}
+
+	@Override
+	public int getColumnType (int column) {
+		return types[column - 1];
+		}
+
+	@Override
+	public int getPrecision (int column) {
+		return precisions[column - 1];
+		}
+
+	@Override
+	public int getScale (int column) {
+		return scales[column - 1];
+		}
+
+	@Override
+	public boolean isAutoIncrement (int column) {
+		return false;
+		}
+
+	@Override
+	public Object[] getRowData() throws SQLServerException {
+		return row;
+		}
+
+	/**
+	 * Read the next row.
+	 * @return true on row, false at the end of the cache
+	 * @throws SQLServerException if the cache is truncated or corrupt
+	 */
+
+	@Override
+	public boolean next() throws SQLServerException {
+		try {
+			int marker = in.read();
+			if (marker == RowCacheWriter.END) {
+				long rows = in.readLong();
+				if (rows != rowCount) throw new IOException ("Cache holds " + rowCount + " rows, " + rows + " expected");
+				row = null;
+				return false;
+				}
+			if (marker != RowCacheWriter.ROW) throw (marker < 0) ? new EOFException ("Cache is truncated") : new IOException ("Cache is corrupt");
+
+			in.readFully (nulls);
+			Object[] o = new Object[names.length];
+			for (int k=0; k<o.length; ++k) {
+				if ((nulls[k >> 3] & (1 << (k & 7))) == 0) o[k] = readValue();
+				}
+			row = o;
+			++ rowCount;
+			return true;
+			}
+		catch (Exception ex) {
+			String msg = MessageFormat.format ("File={0}, Row={1}, Err={2}",fileName,rowCount + 1,ex.getMessage());
+			throw new SQLServerException (msg,null,0,ex);
+			}
+		}
+
+	/**
+	 * Read a value written by RowCacheWriter.writeValue().
+	 */
+
+	protected Object readValue() throws IOException {
+		int tag = in.read();
+		switch (tag) {
+			case RowCacheWriter.STRING:
+				return new String (readBytes(),StandardCharsets.UTF_8);
+			case RowCacheWriter.INTEGER:
+				return in.readInt();
+			case RowCacheWriter.LONG:
+				return in.readLong();
+			case RowCacheWriter.SHORT:
+				return in.readShort();
+			case RowCacheWriter.DECIMAL:
+				long unscaled = in.readLong();
+				return BigDecimal.valueOf (unscaled,in.readInt());
+			case RowCacheWriter.LONG_DECIMAL:
+				BigInteger big = new BigInteger (readBytes());
+				return new BigDecimal (big,in.readInt());
+			case RowCacheWriter.DOUBLE:
+				return in.readDouble();
+			case RowCacheWriter.FLOAT:
+				return in.readFloat();
+			case RowCacheWriter.BOOLEAN:
+				return in.readBoolean();
+			case RowCacheWriter.TIMESTAMP:
+				long seconds = in.readLong();
+				return java.sql.Timestamp.valueOf (LocalDateTime.ofEpochSecond (seconds,in.readInt(),ZoneOffset.UTC));
+			case RowCacheWriter.DATE:
+				return java.sql.Date.valueOf (LocalDate.ofEpochDay (in.readLong()));
+			case RowCacheWriter.TIME:
+				java.sql.Time t = java.sql.Time.valueOf (LocalTime.ofSecondOfDay (in.readInt()));
+				t.setTime (t.getTime() + in.readShort());
+				return t;
+			case RowCacheWriter.OFFSET_DATETIME:
+				long epoch = in.readLong();
+				int nanos = in.readInt();
+				return OffsetDateTime.ofInstant (Instant.ofEpochSecond (epoch,nanos),ZoneOffset.ofTotalSeconds (in.readInt()));
+			case RowCacheWriter.BYTES:
+				return readBytes();
+			default:
+				throw new IOException ((tag < 0) ? "Cache is truncated" : "Cache is corrupt");
+			}
+		}
+
+	/**
+	 * Read a length-prefixed byte array.
+	 */
+
+	protected byte[] readBytes() throws IOException {
+		int n = 0;
+		for (int shift=0; ; shift+=7) {
+			int b = in.readUnsignedByte();
+			n |= (b & 0x7f) << shift;
+			if (b < 0x80) break;
+			}
+		byte[] b = new byte[n];
+		in.readFully (b);
+		return b;
+		}
+
+	}
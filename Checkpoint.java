@@ -0,0 +1,62 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.Serializable;
+
+/**
+ * Position in a file from which a failed load can be resumed: the byte
+ * offset of the first row not yet sent, and the number of rows read before
+ * it. Save toString() and restore with valueOf(), or serialize.
+ */
+
+public class Checkpoint implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	protected final long offset;
+	protected final long rows;
+
+	public Checkpoint (long offset,long rows) {
+		this.offset = offset;
+		this.rows = rows;
+		}
+
+	/**
+	 * Parse a checkpoint saved with toString().
+	 * @param s	Text of the form Offset=n, Rows=n
+	 * @return Checkpoint
+	 */
+
+	public static Checkpoint valueOf (String s) {
+		String[] parts = s.split (",");
+		if (parts.length != 2) throw new IllegalArgumentException ("Invalid checkpoint " + s);
+		return new Checkpoint (Long.parseLong (value (parts[0],"Offset")),Long.parseLong (value (parts[1],"Rows")));
+		}
+
+	protected static String value (String part,String name) {
+		String[] kv = part.trim().split ("=");
+		if (kv.length != 2 || !kv[0].equals (name)) throw new IllegalArgumentException ("Invalid checkpoint, expected " + name);
+		return kv[1].trim();
+		}
+
+	/**
+	 * @return Byte offset of the first row after the checkpoint
+	 */
+
+	public long getOffset() {
+		return offset;
+		}
+
+	/**
+	 * @return Rows read before the checkpoint, including header lines
+	 */
+
+	public long getRows() {
+		return rows;
+		}
+
+	@Override
+	public String toString() {
+		return "Offset=" + offset + ", Rows=" + rows;
+		}
+
+	}
@@ -0,0 +1,19 @@
+package SQLServerBulkRecordDelimited;
+
+/**
+ * Receiver of checkpoints from a record set up with checkpoint(). Called on
+ * the thread running the bulk copy, once all rows before the checkpoint have
+ * been sent.
+ */
+
+public interface CheckpointListener {
+
+	/**
+	 * Note a position from which the load can be resumed with resumeFrom().
+	 * @param checkpoint	Offset and row count after the last batch sent
+	 * @throws Exception 
+	 */
+
+	void checkpoint (Checkpoint checkpoint) throws Exception;
+
+	}
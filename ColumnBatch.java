@@ -0,0 +1,439 @@
+package SQLServerBulkRecordDelimited;
+
+import java.sql.Types;
+import java.util.Arrays;
+import com.microsoft.sqlserver.jdbc.SQLServerException;
+
+/**
+ * Block of rows held by column, filled by
+ * SQLServerBulkRecordDelimited.nextBatch(). Integer and bit columns are held
+ * as long[], floating point columns as double[] and character columns as
+ * one char[] per column with the end offset of each value, so a block is
+ * parsed without creating an object per value. Other columns, and columns
+ * with a custom converter or intern(), hold their converted values.
+ *
+ * Columns are numbered from 0 over the loaded columns, and rows from 0 to
+ * size() - 1. The arrays are reused by the next block.
+ */
+
+public class ColumnBatch {
+
+	/**
+	 * Storage of a column.
+	 */
+
+	public static final int LONG = 0;
+	public static final int DOUBLE = 1;
+	public static final int CHARS = 2;
+	public static final int OBJECT = 3;
+
+	// Column metadata
+	protected final String[] names;
+	protected final int[] types;
+	protected final int[] kinds;
+	protected final ColumnConverter[] converters;
+	protected final String nullText;
+
+	// Return shared boxes from getObject(), see reuseRows()
+	protected boolean shareBoxes = false;
+
+	// Column values. Character values of row r are chars[r's offsets[r]
+	// to offsets[r+1]).
+	protected final long[][] longs;
+	protected final double[][] doubles;
+	protected final char[][] chars;
+	protected final int[][] offsets;
+	protected final Object[][] objects;
+
+	// Null bitmap of each column, a bit per row
+	protected final long[][] nulls;
+
+	// Rows held, and the capacity of the block
+	protected final int capacity;
+	protected int size = 0;
+
+	// Byte offset after each row and lines read up to it, for checkpoints
+	protected final long[] ends;
+	protected final int[] lines;
+
+	// Error that ended the block, raised once the rows before it are used.
+	// An error in next() comes from reading the file, otherwise from
+	// converting the row after the last one held.
+	protected SQLServerException error = null;
+	protected boolean errorInNext = false;
+
+	/**
+	 * Create an empty block.
+	 * @param capacity		Rows per block
+	 * @param names			Names of the loaded columns
+	 * @param types			java.sql.Types of the loaded columns
+	 * @param converters	Converter of each column, used for OBJECT columns
+	 * @param objectOnly	Columns that must keep converted values, such as
+	 * 						those with a custom converter
+	 * @param nullText		Text representing NULL in character columns, or null
+	 */
+
+	public ColumnBatch (int capacity,String[] names,int[] types,ColumnConverter[] converters,boolean[] objectOnly,String nullText) {
+		int n = names.length;
+		this.capacity = capacity;
+		this.names = names;
+		this.types = types;
+		this.converters = converters;
+		this.nullText = nullText;
+		this.kinds = new int[n];
+		this.longs = new long[n][];
+		this.doubles = new double[n][];
+		this.chars = new char[n][];
+		this.offsets = new int[n][];
+		this.objects = new Object[n][];
+		this.nulls = new long[n][];
+		this.ends = new long[capacity];
+		this.lines = new int[capacity];
+
+		for (int k=0; k<n; ++k) {
+			kinds[k] = objectOnly[k] ? OBJECT : kindOf (types[k]);
+			switch (kinds[k]) {
+				case LONG: longs[k] = new long[capacity]; break;
+				case DOUBLE: doubles[k] = new double[capacity]; break;
+				case CHARS:
+					chars[k] = new char[capacity * 16];
+					offsets[k] = new int[capacity + 1];
+					break;
+				default: objects[k] = new Object[capacity]; break;
+				}
+			nulls[k] = new long[(capacity + 63) / 64];
+			}
+		}
+
+	/**
+	 * Storage used for a column type.
+	 * @param type	java.sql.Types data type
+	 * @return LONG, DOUBLE, CHARS or OBJECT
+	 */
+
+	public static int kindOf (int type) {
+		switch (type) {
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+			case Types.BIGINT:
+			case Types.BIT:
+				return LONG;
+			case Types.REAL:
+			case Types.DOUBLE:
+				return DOUBLE;
+			default:
+				return SQLServerBulkRecordDelimited.isCharacter (type) ? CHARS : OBJECT;
+			}
+		}
+
+	//--------------------------------------------------------------------------
+	//	Filling
+	//--------------------------------------------------------------------------
+
+	/**
+	 * Empty the block for reuse.
+	 */
+
+	protected void clear() {
+		size = 0;
+		error = null;
+		errorInNext = false;
+		}
+
+	/**
+	 * Parse a value into a row, which becomes part of the block when size
+	 * is advanced past it. A row that fails part way is overwritten by the
+	 * next.
+	 * @param k		Base-0 loaded column number
+	 * @param r		Row
+	 * @param text	Row text
+	 * @param start	Offset of the value
+	 * @param end	Offset one past the value
+	 * @throws Exception if the value does not convert
+	 */
+
+	protected void parse (int k,int r,CharSequence text,int start,int end) throws Exception {
+		boolean isNull;
+		switch (kinds[k]) {
+			case LONG:
+				isNull = (start == end);
+				if (!isNull) longs[k][r] = parseLong (types[k],text,start,end);
+				break;
+			case DOUBLE:
+				isNull = (start == end);
+				if (!isNull) doubles[k][r] = (types[k] == Types.REAL) ? Float.parseFloat (ColumnConverters.substring (text,start,end)) : Double.parseDouble (ColumnConverters.substring (text,start,end));
+				break;
+			case CHARS:
+				int[] off = offsets[k];
+				isNull = (nullText != null && ColumnConverters.regionEquals (text,start,end,nullText));
+				int from = off[r];
+				int length = isNull ? 0 : end - start;
+				if (from + length > chars[k].length) chars[k] = Arrays.copyOf (chars[k],Math.max (chars[k].length * 2,from + length));
+				if (length > 0) copyChars (text,start,end,chars[k],from);
+				off[r + 1] = from + length;
+				break;
+			default:
+				Object o = converters[k].convert (text,start,end);
+				objects[k][r] = o;
+				isNull = (o == null);
+				break;
+			}
+		if (isNull) nulls[k][r >> 6] |= 1L << r;
+		else nulls[k][r >> 6] &= ~(1L << r);
+		}
+
+	/**
+	 * Parse an integer or bit value.
+	 */
+
+	protected static long parseLong (int type,CharSequence text,int start,int end) throws Exception {
+		switch (type) {
+			case Types.INTEGER: return NumberParser.parseInt (text,start,end);
+			case Types.BIGINT: return NumberParser.parseBigint (text,start,end);
+			case Types.BIT:
+				if (end - start == 1 && text.charAt (start) == '0') return 0;
+				if (end - start == 1 && text.charAt (start) == '1') return 1;
+				throw new Exception ("Binary not 1 or 0");
+			default: return NumberParser.parseShort (text,start,end);
+			}
+		}
+
+	/**
+	 * Copy a range of characters, without an intermediate String.
+	 */
+
+	protected static void copyChars (CharSequence text,int start,int end,char[] dst,int at) {
+		if (text instanceof String) ((String) text).getChars (start,end,dst,at);
+		else if (text instanceof RowView) ((RowView) text).getChars (start,end,dst,at);
+		else if (text instanceof StringBuilder) ((StringBuilder) text).getChars (start,end,dst,at);
+		else for (int i=start; i<end; ++i) dst[at++] = text.charAt (i);
+		}
+
+	/**
+	 * Store a converted row, for blocks filled from rows rather than parsed.
+	 * @param r		Row
+	 * @param row	Values of the loaded columns, as from getRowData()
+	 */
+
+	protected void put (int r,Object[] row) {
+		for (int k=0; k<row.length; ++k) {
+			Object o = row[k];
+			switch (kinds[k]) {
+				case LONG:
+					if (o != null) longs[k][r] = ((Number) o).longValue();
+					break;
+				case DOUBLE:
+					if (o != null) doubles[k][r] = ((Number) o).doubleValue();
+					break;
+				case CHARS:
+					int[] off = offsets[k];
+					String s = (o == null) ? "" : o.toString();
+					if (off[r] + s.length() > chars[k].length) chars[k] = Arrays.copyOf (chars[k],Math.max (chars[k].length * 2,off[r] + s.length()));
+					s.getChars (0,s.length(),chars[k],off[r]);
+					off[r + 1] = off[r] + s.length();
+					break;
+				default:
+					objects[k][r] = o;
+					break;
+				}
+			if (o == null) nulls[k][r >> 6] |= 1L << r;
+			else nulls[k][r >> 6] &= ~(1L << r);
+			}
+		}
+
+	//--------------------------------------------------------------------------
+	//	Access
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return Number of rows in the block
+	 */
+
+	public int size() {
+		return size;
+		}
+
+	/**
+	 * @return Number of loaded columns
+	 */
+
+	public int getColumnCount() {
+		return names.length;
+		}
+
+	/**
+	 * @param column	Base-0 loaded column number
+	 * @return Column name
+	 */
+
+	public String getColumnName (int column) {
+		return names[column];
+		}
+
+	/**
+	 * @param column	Base-0 loaded column number
+	 * @return java.sql.Types data type
+	 */
+
+	public int getColumnType (int column) {
+		return types[column];
+		}
+
+	/**
+	 * @param column	Base-0 loaded column number
+	 * @return LONG, DOUBLE, CHARS or OBJECT
+	 */
+
+	public int getKind (int column) {
+		return kinds[column];
+		}
+
+	/**
+	 * @param column	Base-0 loaded column number
+	 * @param row		Row in the block
+	 * @return true if the value is NULL
+	 */
+
+	public boolean isNull (int column,int row) {
+		return (nulls[column][row >> 6] & (1L << row)) != 0;
+		}
+
+	/**
+	 * Null bitmap of a column, bit (row % 64) of word (row / 64) set for
+	 * each NULL.
+	 * @param column	Base-0 loaded column number
+	 * @return Bitmap
+	 */
+
+	public long[] getNulls (int column) {
+		return nulls[column];
+		}
+
+	/**
+	 * Values of a LONG column. Entries for NULL rows are undefined.
+	 * @param column	Base-0 loaded column number
+	 * @return Values, of which the first size() are used
+	 */
+
+	public long[] getLongs (int column) {
+		return longs[column];
+		}
+
+	/**
+	 * Values of a DOUBLE column. Entries for NULL rows are undefined.
+	 * @param column	Base-0 loaded column number
+	 * @return Values, of which the first size() are used
+	 */
+
+	public double[] getDoubles (int column) {
+		return doubles[column];
+		}
+
+	/**
+	 * Characters of a CHARS column, with the values of row r from
+	 * getOffsets()[r] to getOffsets()[r+1].
+	 * @param column	Base-0 loaded column number
+	 * @return Characters
+	 */
+
+	public char[] getChars (int column) {
+		return chars[column];
+		}
+
+	/**
+	 * Offsets into getChars() of a CHARS column, size() + 1 entries.
+	 * @param column	Base-0 loaded column number
+	 * @return Offsets
+	 */
+
+	public int[] getOffsets (int column) {
+		return offsets[column];
+		}
+
+	/**
+	 * @param column	Base-0 loaded column number
+	 * @param row		Row in the block
+	 * @return Value of a LONG column
+	 */
+
+	public long getLong (int column,int row) {
+		return longs[column][row];
+		}
+
+	/**
+	 * @param column	Base-0 loaded column number
+	 * @param row		Row in the block
+	 * @return Value of a DOUBLE column
+	 */
+
+	public double getDouble (int column,int row) {
+		return doubles[column][row];
+		}
+
+	/**
+	 * @param column	Base-0 loaded column number
+	 * @param row		Row in the block
+	 * @return Value of a CHARS column, or null
+	 */
+
+	public String getString (int column,int row) {
+		if (isNull (column,row)) return null;
+		int[] off = offsets[column];
+		return new String (chars[column],off[row],off[row + 1] - off[row]);
+		}
+
+	/**
+	 * Get a value as the object getRowData() returns for it: Integer,
+	 * Short, Long, Float, Double, String or the converted value.
+	 * @param column	Base-0 loaded column number
+	 * @param row		Row in the block
+	 * @return Value, or null
+	 */
+
+	public Object getObject (int column,int row) {
+		switch (kinds[column]) {
+			case LONG:
+				if (isNull (column,row)) return null;
+				long v = longs[column][row];
+				switch (types[column]) {
+					case Types.BIGINT: return shareBoxes ? BoxCache.longValue (v) : Long.valueOf (v);
+					case Types.INTEGER:
+					case Types.BIT: return shareBoxes ? BoxCache.integer ((int) v) : Integer.valueOf ((int) v);
+					default: return shareBoxes ? BoxCache.shortValue ((short) v) : Short.valueOf ((short) v);
+					}
+			case DOUBLE:
+				if (isNull (column,row)) return null;
+				double d = doubles[column][row];
+				if (types[column] == Types.REAL) return (float) d;
+				return d;
+			case CHARS:
+				return getString (column,row);
+			default:
+				return objects[column][row];
+			}
+		}
+
+	/**
+	 * Get a row as getRowData() returns it.
+	 * @param row	Row in the block
+	 * @return Values of the loaded columns
+	 */
+
+	public Object[] getRow (int row) {
+		return getRow (row,new Object[names.length]);
+		}
+
+	/**
+	 * Get a row into an existing array.
+	 * @param row	Row in the block
+	 * @param o		Array of getColumnCount() values to fill
+	 * @return The array
+	 */
+
+	public Object[] getRow (int row,Object[] o) {
+		for (int k=0; k<o.length; ++k) o[k] = getObject (k,row);
+		return o;
+		}
+
+	}
@@ -0,0 +1,26 @@
+package SQLServerBulkRecordDelimited;
+
+/**
+ * Converts the text of one column to the object sent to SQL Server. One
+ * converter is created per column when the column is defined. Converters
+ * may be called from several threads at once in parallel modes, so they
+ * should not hold mutable state.
+ */
+
+@FunctionalInterface
+public interface ColumnConverter {
+
+	/**
+	 * Convert a range of characters in a row. The row may be a view of the
+	 * read buffer, valid only for the call, so a value that keeps its
+	 * characters must copy them, as subSequence() and toString() do.
+	 * @param row	Row containing the value
+	 * @param start	Offset of first character
+	 * @param end	Offset one past the last character
+	 * @return Converted value, or null
+	 * @throws Exception 
+	 */
+
+	Object convert (CharSequence row,int start,int end) throws Exception;
+
+	}
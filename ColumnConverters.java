@@ -0,0 +1,196 @@
+package SQLServerBulkRecordDelimited;
+
+import java.sql.Types;
+
+/**
+ * Built-in column converters. Null handling is decided when the converter
+ * is created: character columns return null for the nullText value, other
+ * columns return null for an empty value.
+ */
+
+public class ColumnConverters {
+
+	/**
+	 * Create the built-in converter for a column type.
+	 * @param type		java.sql.Types data type, after redirection in column()
+	 * @param scale		Decimal places
+	 * @param parser	Compiled parser for date and time types
+	 * @param nullText	Text representing NULL in character columns, or null
+	 * @return Converter
+	 */
+
+	public static ColumnConverter forType (int type,int scale,TemporalParser parser,String nullText) {
+		return forType (type,scale,parser,nullText,null);
+		}
+
+	/**
+	 * Create the built-in converter for a column type, taking character
+	 * values from a cache of shared Strings.
+	 * @param type		java.sql.Types data type, after redirection in column()
+	 * @param scale		Decimal places
+	 * @param parser	Compiled parser for date and time types
+	 * @param nullText	Text representing NULL in character columns, or null
+	 * @param cache		Cache for character values, or null
+	 * @return Converter
+	 */
+
+	public static ColumnConverter forType (int type,int scale,TemporalParser parser,String nullText,StringCache cache) {
+		return forType (type,scale,parser,nullText,cache,null);
+		}
+
+	/**
+	 * Create the built-in converter for a column type, returning shared
+	 * boxes for common integer values and repeated decimals.
+	 * @param type		java.sql.Types data type, after redirection in column()
+	 * @param scale		Decimal places
+	 * @param parser	Compiled parser for date and time types
+	 * @param nullText	Text representing NULL in character columns, or null
+	 * @param cache		Cache for character values, or null
+	 * @param boxes		Decimal cache for the column, or null for new boxes
+	 * @return Converter
+	 */
+
+	public static ColumnConverter forType (int type,int scale,TemporalParser parser,String nullText,StringCache cache,BoxCache boxes) {
+
+		if (boxes != null) {
+			switch (type) {
+				case Types.INTEGER:
+					return (row,start,end) -> (start == end) ? null : BoxCache.integer (NumberParser.parseInt (row,start,end));
+				case Types.TINYINT:
+				case Types.SMALLINT:
+					return (row,start,end) -> (start == end) ? null : BoxCache.shortValue (NumberParser.parseShort (row,start,end));
+				case Types.BIGINT:
+					return (row,start,end) -> (start == end) ? null : BoxCache.longValue (NumberParser.parseBigint (row,start,end));
+				case Types.DECIMAL:
+				case Types.NUMERIC:
+					return (row,start,end) -> (start == end) ? null : NumberParser.parseDecimal (row,start,end,scale,boxes);
+				}
+			}
+
+		switch (type) {
+
+			case Types.CHAR:
+			case Types.LONGNVARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.VARCHAR:
+				if (cache != null && nullText == null) return (row,start,end) -> cache.get (row,start,end);
+				if (cache != null) return (row,start,end) -> regionEquals (row,start,end,nullText) ? null : cache.get (row,start,end);
+				if (nullText == null) return (row,start,end) -> substring (row,start,end);
+				return (row,start,end) -> regionEquals (row,start,end,nullText) ? null : substring (row,start,end);
+
+			case Types.INTEGER:
+				return (row,start,end) -> (start == end) ? null : Integer.valueOf (NumberParser.parseInt (row,start,end));
+
+			case Types.TINYINT:
+			case Types.SMALLINT:
+				return (row,start,end) -> (start == end) ? null : Short.valueOf (NumberParser.parseShort (row,start,end));
+
+			case Types.BIGINT:
+				return (row,start,end) -> (start == end) ? null : Long.valueOf (NumberParser.parseBigint (row,start,end));
+
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				return (row,start,end) -> (start == end) ? null : NumberParser.parseDecimal (row,start,end,scale);
+
+			case Types.BIT:
+				return (row,start,end) -> {
+					if (start == end) return null;
+					if (end - start == 1 && row.charAt(start) == '0') return 0;
+					if (end - start == 1 && row.charAt(start) == '1') return 1;
+					throw new Exception ("Binary not 1 or 0");
+					};
+
+			case Types.REAL:
+				return (row,start,end) -> (start == end) ? null : Float.parseFloat (substring (row,start,end));
+
+			case Types.DOUBLE:
+				return (row,start,end) -> (start == end) ? null : Double.parseDouble (substring (row,start,end));
+
+			case Types.DATE:
+			case Types.TIME:
+			case Types.TIMESTAMP:
+			case Types.TIMESTAMP_WITH_TIMEZONE:
+				return (row,start,end) -> (start == end) ? null : parser.parse (row,start,end);
+
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return (row,start,end) -> {
+					if (start == end) return null;
+					String binData = substring (row,start,end).trim();
+					if (binData.startsWith("0x") || binData.startsWith("0X")) return binData.substring(2);
+					else return binData;
+					};
+
+			case Types.NULL:
+				return (row,start,end) -> null;
+
+			default:
+				return (row,start,end) -> (start == end) ? null : substring (row,start,end);
+			}
+		}
+
+	/**
+	 * Apply the standard null handling for a column type before calling a
+	 * custom converter, so that the converter only sees non-null values.
+	 * @param type		java.sql.Types data type
+	 * @param nullText	Text representing NULL in character columns, or null
+	 * @param converter	Custom converter
+	 * @return Converter
+	 */
+
+	public static ColumnConverter nullable (int type,String nullText,ColumnConverter converter) {
+		if (SQLServerBulkRecordDelimited.isCharacter (type)) {
+			if (nullText == null) return converter;
+			return (row,start,end) -> regionEquals (row,start,end,nullText) ? null : converter.convert (row,start,end);
+			}
+		return (row,start,end) -> (start == end) ? null : converter.convert (row,start,end);
+		}
+
+	/**
+	 * Converter for hexadecimal text, with or without a 0x prefix, to byte[]
+	 * for BINARY and VARBINARY columns.
+	 * @return Converter
+	 */
+
+	public static ColumnConverter hexBinary() {
+		return (row,start,end) -> {
+			while (start < end && Character.isWhitespace (row.charAt(start))) ++ start;
+			while (end > start && Character.isWhitespace (row.charAt(end - 1))) -- end;
+			if (end - start >= 2 && row.charAt(start) == '0' && (row.charAt(start + 1) == 'x' || row.charAt(start + 1) == 'X')) start += 2;
+			if ((end - start) % 2 != 0) throw new Exception ("Odd number of hex digits");
+			byte[] b = new byte[(end - start) / 2];
+			for (int i=0; i<b.length; ++i) {
+				int hi = Character.digit (row.charAt(start + 2 * i),16);
+				int lo = Character.digit (row.charAt(start + 2 * i + 1),16);
+				if (hi < 0 || lo < 0) throw new Exception ("Invalid hex digit");
+				b[i] = (byte) ((hi << 4) | lo);
+				}
+			return b;
+			};
+		}
+
+	/**
+	 * Create a String from a range of characters.
+	 */
+
+	protected static String substring (CharSequence row,int start,int end) {
+		if (row instanceof String) return ((String) row).substring (start,end);
+		return row.subSequence (start,end).toString();
+		}
+
+	/**
+	 * Compare a range of characters with a String without creating a String.
+	 */
+
+	protected static boolean regionEquals (CharSequence row,int start,int end,String text) {
+		int length = end - start;
+		if (length != text.length()) return false;
+		for (int i=0; i<length; ++i) if (row.charAt(start + i) != text.charAt(i)) return false;
+		return true;
+		}
+
+	}
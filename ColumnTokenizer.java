@@ -0,0 +1,320 @@
+package SQLServerBulkRecordDelimited;
+
+public class ColumnTokenizer {
+
+	// Column delimiter
+	protected char[] delimiter;
+	protected int delimiterLength;
+	protected String delimiterString;
+
+	// Start and end offsets of each column, stored as pairs
+	protected int[] offsets;
+
+	// Number of columns found in the last row
+	protected int count = 0;
+
+	// Quote character, 0 if fields are never quoted. Rows holding a quote
+	// are copied without quotes to unquoted, and the offsets refer to it.
+	protected char quote = 0;
+	protected StringBuilder unquoted;
+	protected CharSequence text;
+
+	/**
+	* Construct ColumnTokenizer for a single or multi-character delimiter.
+	*
+	* @param  delimiter  Column delimiter, matched literally
+	* @param  columns    Expected number of columns, used to size the offset array
+	*/
+
+	public ColumnTokenizer(String delimiter, int columns) {
+		if (delimiter == null || delimiter.length() < 1) throw new IllegalArgumentException("delimiter is empty");
+		this.delimiterString = delimiter;
+		this.delimiter = delimiter.toCharArray();
+		this.delimiterLength = this.delimiter.length;
+		this.offsets = new int[Math.max(columns, 1) * 2];
+		}
+
+	/**
+	* Construct ColumnTokenizer for a subclass that finds columns without a
+	* delimiter.
+	*
+	* @param  columns  Expected number of columns, used to size the offset array
+	*/
+
+	protected ColumnTokenizer(int columns) {
+		this.offsets = new int[Math.max(columns, 1) * 2];
+		}
+
+	/**
+	* Construct ColumnTokenizer for fields that may be quoted as in RFC 4180.
+	* A quoted field may hold delimiters and doubled quotes.
+	*
+	* @param  delimiter  Column delimiter, matched literally
+	* @param  columns    Expected number of columns, used to size the offset array
+	* @param  quote      Quote character
+	*/
+
+	public ColumnTokenizer(String delimiter, int columns, char quote) {
+		this(delimiter, columns);
+		this.quote = quote;
+		this.unquoted = new StringBuilder(1024);
+		}
+
+	/**
+	* Split a row into column ranges. Offsets are held in a reusable array
+	* and remain valid until the next call.
+	*
+	* @param  row  Row to split
+	* @return Number of columns found
+	*/
+
+	public int tokenize(CharSequence row) {
+
+		// Rows without a quote take the plain path.
+		text = row;
+		if (quote != 0 && indexOfQuote(row, 0) >= 0) return tokenizeQuoted(row);
+
+		int length = row.length();
+		int n = 0;
+		int start = 0;
+
+		// Strings can use the intrinsic indexOf search.
+		if (row instanceof String) {
+			String s = (String) row;
+			int i = (delimiterLength == 1) ? s.indexOf(delimiter[0]) : s.indexOf(delimiterString);
+			while (i >= 0) {
+				add(n++, start, i);
+				start = i + delimiterLength;
+				i = (delimiterLength == 1) ? s.indexOf(delimiter[0], start) : s.indexOf(delimiterString, start);
+				}
+			}
+
+		// Views of the read buffer are searched in its array.
+		else if (row instanceof RowView) {
+			RowView v = (RowView) row;
+			char[] b = v.array();
+			int base = v.offset();
+			char first = delimiter[0];
+			int last = length - delimiterLength;
+			int i = 0;
+			while (i <= last) {
+				if (b[base + i] == first && matches(b, base + i)) {
+					add(n++, start, i);
+					i += delimiterLength;
+					start = i;
+					}
+				else ++i;
+				}
+			}
+
+		// Otherwise step through the characters looking for the delimiter sequence.
+		else {
+			char first = delimiter[0];
+			int last = length - delimiterLength;
+			int i = 0;
+			while (i <= last) {
+				if (row.charAt(i) == first && matches(row, i)) {
+					add(n++, start, i);
+					i += delimiterLength;
+					start = i;
+					}
+				else ++i;
+				}
+			}
+
+		// The remainder of the row is the final column, even if empty.
+		add(n++, start, length);
+		count = n;
+		return n;
+		}
+
+	/**
+	* Split a row holding quotes, copying the field values without their
+	* quotes. A doubled quote inside a quoted field stands for one quote.
+	* Text after a closing quote, or a quote inside an unquoted field, is
+	* kept as it is.
+	*
+	* @param  row  Row to split
+	* @return Number of columns found
+	*/
+
+	protected int tokenizeQuoted(CharSequence row) {
+
+		StringBuilder sb = unquoted;
+		sb.setLength(0);
+		int length = row.length();
+		int n = 0;
+		int i = 0;
+
+		while (true) {
+			int start = sb.length();
+
+			if (i < length && row.charAt(i) == quote) {
+				++i;
+				while (i < length) {
+					char c = row.charAt(i);
+					if (c == quote) {
+						if (i + 1 < length && row.charAt(i + 1) == quote) {
+							sb.append(quote);
+							i += 2;
+							continue;
+							}
+						++i;
+						break;
+						}
+					sb.append(c);
+					++i;
+					}
+				}
+
+			while (i < length && !(row.charAt(i) == delimiter[0] && i + delimiterLength <= length && matches(row, i))) {
+				sb.append(row.charAt(i));
+				++i;
+				}
+
+			add(n++, start, sb.length());
+			if (i >= length) break;
+			i += delimiterLength;
+			}
+
+		text = sb;
+		count = n;
+		return n;
+		}
+
+	/**
+	* Test whether a row ends inside a quoted field, in which case the row
+	* continues after the next row delimiter. Quotes are read with the same
+	* rules as tokenize().
+	*
+	* @param  row  Row, with any continuation lines read so far
+	* @return true if a quoted field is still open
+	*/
+
+	public boolean isOpenQuoted(CharSequence row) {
+		return isOpenQuoted(row, 0, false);
+		}
+
+	/**
+	* Continue the test of isOpenQuoted() from a point in the row, so that
+	* a row read a line at a time is scanned once rather than again from
+	* its start after each line.
+	*
+	* @param  row     Row, with any continuation lines read so far
+	* @param  from    Index to scan from, at the start of a field or inside
+	*                 a quoted field
+	* @param  quoted  true if from is inside a quoted field
+	* @return true if a quoted field is still open
+	*/
+
+	public boolean isOpenQuoted(CharSequence row, int from, boolean quoted) {
+		if (quote == 0 || (!quoted && indexOfQuote(row, from) < 0)) return false;
+		int length = row.length();
+		boolean fieldStart = !quoted;
+		for (int i=from; i<length; ++i) {
+			char c = row.charAt(i);
+			if (quoted) {
+				if (c == quote) {
+					if (i + 1 < length && row.charAt(i + 1) == quote) ++i;
+					else quoted = false;
+					}
+				}
+			else if (c == quote && fieldStart) quoted = true;
+			else if (c == delimiter[0] && i + delimiterLength <= length && matches(row, i)) {
+				i += delimiterLength - 1;
+				fieldStart = true;
+				continue;
+				}
+			fieldStart = false;
+			}
+		return quoted;
+		}
+
+	/**
+	* Find the quote character.
+	*/
+
+	protected int indexOfQuote(CharSequence s, int from) {
+		if (s instanceof String) return ((String) s).indexOf(quote, from);
+		for (int i=from; i<s.length(); ++i) if (s.charAt(i) == quote) return i;
+		return -1;
+		}
+
+	/**
+	* Characters that the offsets of the last row refer to, the row itself
+	* unless it held quoted fields.
+	*
+	* @return Row text
+	*/
+
+	public CharSequence text() {
+		return text;
+		}
+
+	/**
+	* Number of columns found in the last row.
+	*
+	* @return Column count
+	*/
+
+	public int count() {
+		return count;
+		}
+
+	/**
+	* Start offset of a column in the last row.
+	*
+	* @param  column  Base-0 column number
+	* @return Offset of first character
+	*/
+
+	public int start(int column) {
+		return offsets[column * 2];
+		}
+
+	/**
+	* End offset of a column in the last row.
+	*
+	* @param  column  Base-0 column number
+	* @return Offset one past the last character
+	*/
+
+	public int end(int column) {
+		return offsets[column * 2 + 1];
+		}
+
+	/**
+	* Record a column range, growing the offset array if the row has more
+	* columns than expected.
+	*/
+
+	protected void add(int column, int start, int end) {
+		int i = column * 2;
+		if (i + 1 >= offsets.length) offsets = java.util.Arrays.copyOf(offsets, offsets.length * 2);
+		offsets[i] = start;
+		offsets[i + 1] = end;
+		}
+
+	/**
+	* Test for the full delimiter sequence at a position.
+	*/
+
+	protected boolean matches(CharSequence row, int index) {
+		for (int j=1; j<delimiterLength; ++j) {
+			if (row.charAt(index + j) != delimiter[j]) return false;
+			}
+		return true;
+		}
+
+	/**
+	* Test for the full delimiter sequence at a position of an array.
+	*/
+
+	protected boolean matches(char[] row, int index) {
+		for (int j=1; j<delimiterLength; ++j) {
+			if (row[index + j] != delimiter[j]) return false;
+			}
+		return true;
+		}
+
+	}
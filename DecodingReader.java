@@ -0,0 +1,205 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader of an input stream in place of InputStreamReader, with decode
+ * loops for the common encodings that do not go through a CharsetDecoder:
+ *
+ * ISO-8859-1	each byte widened to a char
+ * UTF-8		ASCII bytes widened until a byte with the high bit set,
+ * 				when the decoder takes over for the rest of the read
+ * UTF-16LE		each pair of bytes joined into a char
+ *
+ * Other encodings are decoded by a CharsetDecoder. Malformed input is
+ * replaced, as by InputStreamReader. An odd byte at the end of UTF-16LE
+ * input is read as U+FFFD; surrogates are passed through unchecked.
+ */
+
+public class DecodingReader extends Reader {
+
+	// Decode paths
+	public static final int DECODER = 0;
+	public static final int LATIN1 = 1;
+	public static final int UTF8 = 2;
+	public static final int UTF16LE = 3;
+
+	protected static final int BUFSIZE = 1 << 16;
+
+	protected InputStream in;
+	protected final int kind;
+	protected final CharsetDecoder decoder;
+
+	// Bytes read and not yet decoded, from start to end
+	protected final byte[] bytes;
+	protected final ByteBuffer byteBuffer;
+	protected int start = 0;
+	protected int end = 0;
+	protected boolean endOfInput = false;
+	protected boolean flushed = false;
+
+	// A read of one char decodes two, since a character may need a
+	// surrogate pair, and the second is kept for the next read
+	protected final char[] pair = new char[2];
+	protected int pending = -1;
+
+	/**
+	 * Create a reader of a stream.
+	 * @param in		Input stream
+	 * @param charset	Character set of the data
+	 */
+
+	public DecodingReader (InputStream in,Charset charset) {
+		this.in = in;
+		this.kind = kind (charset);
+		this.decoder = charset.newDecoder()
+			.onMalformedInput (CodingErrorAction.REPLACE)
+			.onUnmappableCharacter (CodingErrorAction.REPLACE);
+		this.bytes = new byte[BUFSIZE];
+		this.byteBuffer = ByteBuffer.wrap (bytes);
+		}
+
+	/**
+	 * Get the decode path for a character set.
+	 * @param charset	Character set
+	 * @return LATIN1, UTF8, UTF16LE, or DECODER for any other
+	 */
+
+	public static int kind (Charset charset) {
+		if (charset.equals (StandardCharsets.ISO_8859_1)) return LATIN1;
+		if (charset.equals (StandardCharsets.UTF_8)) return UTF8;
+		if (charset.equals (StandardCharsets.UTF_16LE)) return UTF16LE;
+		return DECODER;
+		}
+
+	/**
+	 * Read characters, blocking until at least one is decoded or the end of
+	 * the stream is reached.
+	 * @return Number of characters read, or -1 at end of stream
+	 */
+
+	@Override
+	public int read (char[] cbuf,int off,int len) throws IOException {
+		if (in == null) throw new IOException ("Stream closed");
+		if (len == 0) return 0;
+		if (pending >= 0) {
+			cbuf[off] = (char) pending;
+			pending = -1;
+			return 1;
+			}
+		if (len == 1) {
+			int n = read (pair,0,2);
+			if (n < 0) return -1;
+			if (n == 2) pending = pair[1];
+			cbuf[off] = pair[0];
+			return 1;
+			}
+		while (true) {
+			int n = (start < end) ? decode (cbuf,off,len) : 0;
+			if (n > 0) return n;
+			if (endOfInput) return flush (cbuf,off,len);
+			readBytes();
+			}
+		}
+
+	/**
+	 * Decode the bytes held into a range of the character array.
+	 * @return Number of characters decoded, 0 if more bytes are needed
+	 */
+
+	protected int decode (char[] cbuf,int off,int len) {
+		byte[] b = bytes;
+		int i = start;
+		switch (kind) {
+			case LATIN1: {
+				int n = Math.min (len,end - i);
+				for (int j=0; j<n; ++j) cbuf[off + j] = (char) (b[i + j] & 0xff);
+				start = i + n;
+				return n;
+				}
+			case UTF16LE: {
+				int n = Math.min (len,(end - i) >> 1);
+				for (int j=0; j<n; ++j, i+=2) cbuf[off + j] = (char) ((b[i] & 0xff) | (b[i + 1] << 8));
+				start = i;
+				return n;
+				}
+			case UTF8: {
+				int n = Math.min (len,end - i);
+				int j = 0;
+				for (; j<n && b[i + j] >= 0; ++j) cbuf[off + j] = (char) b[i + j];
+				start = i + j;
+				if (j == n) return n;
+				return j + decodeRest (cbuf,off + j,len - j);
+				}
+			default:
+				return decodeRest (cbuf,off,len);
+			}
+		}
+
+	/**
+	 * Decode with the CharsetDecoder, leaving any partial character for the
+	 * next read.
+	 */
+
+	protected int decodeRest (char[] cbuf,int off,int len) {
+		byteBuffer.limit (end).position (start);
+		CharBuffer out = CharBuffer.wrap (cbuf,off,len);
+		decoder.decode (byteBuffer,out,endOfInput);
+		start = byteBuffer.position();
+		return out.position() - off;
+		}
+
+	/**
+	 * Decode what is left at the end of the stream.
+	 * @return Number of characters, or -1 if none
+	 */
+
+	protected int flush (char[] cbuf,int off,int len) {
+		if (flushed) return -1;
+		CharBuffer out = CharBuffer.wrap (cbuf,off,len);
+		if (kind == UTF16LE) {
+			if (start < end) out.put ('\uFFFD');
+			}
+		else if (kind != LATIN1) {
+			byteBuffer.limit (end).position (start);
+			decoder.decode (byteBuffer,out,true);
+			decoder.flush (out);
+			}
+		start = end;
+		flushed = true;
+		int n = out.position() - off;
+		return (n > 0) ? n : -1;
+		}
+
+	/**
+	 * Move any partial character to the start of the buffer and read more
+	 * bytes after it.
+	 */
+
+	protected void readBytes() throws IOException {
+		if (start > 0) {
+			System.arraycopy (bytes,start,bytes,0,end - start);
+			end -= start;
+			start = 0;
+			}
+		int n = in.read (bytes,end,bytes.length - end);
+		if (n < 0) endOfInput = true;
+		else end += n;
+		}
+
+	@Override
+	public void close() throws IOException {
+		if (in == null) return;
+		in.close();
+		in = null;
+		}
+
+	}
@@ -0,0 +1,30 @@
+package SQLServerBulkRecordDelimited;
+
+/**
+ * Padding removed from a fixed-width field before it is converted.
+ */
+
+public enum FieldTrim {
+
+	/**
+	 * Keep the field as it is.
+	 */
+	NONE,
+
+	/**
+	 * Remove leading spaces, for right-aligned values padded on the left.
+	 */
+	LEFT,
+
+	/**
+	 * Remove trailing spaces, for left-aligned values padded on the right.
+	 * The default for character columns.
+	 */
+	RIGHT,
+
+	/**
+	 * Remove leading and trailing spaces. The default for other columns.
+	 */
+	BOTH
+
+	}
@@ -0,0 +1,242 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Types;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic generator of delimited test files for benchmarks. The same
+ * settings and seed always produce the same file, and record() defines a
+ * SQLServerBulkRecordDelimited to load it.
+ */
+
+public class FileGenerator {
+
+	// Characters outside ASCII mixed into character columns: two, three and
+	// four byte UTF-8 sequences
+	protected static final String[] MULTIBYTE = { "\u00e9", "\u00df", "\u20ac", "\u4e2d", "\u6587", "\ud83d\ude00" };
+
+	protected long rows = 100000;
+	protected String columns = "INTEGER,BIGINT,DECIMAL,TIMESTAMP,VARCHAR";
+	protected String colDelimiter = ",";
+	protected String rowDelimiter = "\n";
+	protected double nullDensity = 0;
+	protected double multibyte = 0;
+	protected int maxLength = 40;
+	protected long seed = 1;
+
+	//--------------------------------------------------------------------------
+	//	Fluent interface to set properties
+	//--------------------------------------------------------------------------
+
+	/**
+	 * Set the column delimiter, which may be several characters.
+	 * @param delimiter	Column delimiter
+	 * @return this
+	 */
+
+	public FileGenerator colDelimiter (String delimiter) {
+		this.colDelimiter = delimiter;
+		return this;
+		}
+
+	/**
+	 * Set the column mix, a comma-separated list of INTEGER, BIGINT,
+	 * DECIMAL, TIMESTAMP and VARCHAR.
+	 * @param columns	Column types in file order
+	 * @return this
+	 */
+
+	public FileGenerator columns (String columns) {
+		this.columns = columns;
+		return this;
+		}
+
+	/**
+	 * Set the maximum length of VARCHAR values.
+	 * @param length	Maximum length in characters
+	 * @return this
+	 */
+
+	public FileGenerator maxLength (int length) {
+		this.maxLength = length;
+		return this;
+		}
+
+	/**
+	 * Set the share of VARCHAR characters that are outside ASCII.
+	 * @param fraction	0 for pure ASCII, up to 1
+	 * @return this
+	 */
+
+	public FileGenerator multibyte (double fraction) {
+		this.multibyte = fraction;
+		return this;
+		}
+
+	/**
+	 * Set the share of values that are empty, and so load as NULL.
+	 * @param fraction	0 for no nulls, up to 1
+	 * @return this
+	 */
+
+	public FileGenerator nullDensity (double fraction) {
+		this.nullDensity = fraction;
+		return this;
+		}
+
+	/**
+	 * Set the row delimiter.
+	 * @param delimiter	Row delimiter
+	 * @return this
+	 */
+
+	public FileGenerator rowDelimiter (String delimiter) {
+		this.rowDelimiter = delimiter;
+		return this;
+		}
+
+	/**
+	 * Set the number of rows.
+	 * @param rows	Rows to write
+	 * @return this
+	 */
+
+	public FileGenerator rows (long rows) {
+		this.rows = rows;
+		return this;
+		}
+
+	/**
+	 * Set the random seed.
+	 * @param seed	Seed
+	 * @return this
+	 */
+
+	public FileGenerator seed (long seed) {
+		this.seed = seed;
+		return this;
+		}
+
+	//--------------------------------------------------------------------------
+	//	Generation
+	//--------------------------------------------------------------------------
+
+	/**
+	 * Write the file in UTF-8.
+	 * @param fileName	File to create
+	 * @return Size of the file in bytes
+	 * @throws Exception
+	 */
+
+	public long write (String fileName) throws Exception {
+
+		int[] types = types();
+		SplittableRandom random = new SplittableRandom (seed);
+		StringBuilder sb = new StringBuilder (1024);
+
+		try (Writer w = new BufferedWriter (new OutputStreamWriter (new FileOutputStream (fileName),"UTF-8"),1 << 16)) {
+			for (long r=0; r<rows; ++r) {
+				sb.setLength (0);
+				for (int i=0; i<types.length; ++i) {
+					if (i > 0) sb.append (colDelimiter);
+					if (nullDensity > 0 && random.nextDouble() < nullDensity) continue;
+					value (sb,types[i],random);
+					}
+				sb.append (rowDelimiter);
+				w.append (sb);
+				}
+			}
+
+		return new java.io.File (fileName).length();
+		}
+
+	/**
+	 * Append a random value of a type.
+	 */
+
+	protected void value (StringBuilder sb,int type,SplittableRandom random) {
+		switch (type) {
+			case Types.INTEGER:
+				sb.append (random.nextInt());
+				break;
+			case Types.BIGINT:
+				sb.append (random.nextLong());
+				break;
+			case Types.DECIMAL:
+				long v = random.nextLong (-100000000000L,100000000000L);
+				if (v < 0) sb.append ('-');
+				v = Math.abs (v);
+				sb.append (v / 100).append ('.');
+				if (v % 100 < 10) sb.append ('0');
+				sb.append (v % 100);
+				break;
+			case Types.TIMESTAMP:
+				sb.append (String.format ("%04d-%02d-%02d %02d:%02d:%02d.%03d",random.nextInt (1990,2030),random.nextInt (1,13),random.nextInt (1,29),
+					random.nextInt (24),random.nextInt (60),random.nextInt (60),random.nextInt (1000)));
+				break;
+			default:
+				int length = random.nextInt (maxLength + 1);
+				for (int i=0; i<length; ++i) {
+					if (multibyte > 0 && random.nextDouble() < multibyte) sb.append (MULTIBYTE[random.nextInt (MULTIBYTE.length)]);
+					else sb.append ((char) ('a' + random.nextInt (26)));
+					}
+				break;
+			}
+		}
+
+	/**
+	 * Define a record to load a file written with these settings.
+	 * @param fileName	Generated file
+	 * @return Unopened record
+	 * @throws Exception
+	 */
+
+	public SQLServerBulkRecordDelimited record (String fileName) throws Exception {
+		SQLServerBulkRecordDelimited r = new SQLServerBulkRecordDelimited()
+			.fileName (fileName)
+			.colDelimiter (colDelimiter)
+			.rowDelimiter (rowDelimiter);
+		int[] types = types();
+		for (int i=0; i<types.length; ++i) {
+			String name = "c" + (i + 1);
+			switch (types[i]) {
+				case Types.DECIMAL:
+					r.column (name,types[i],18,2,null);
+					break;
+				case Types.NVARCHAR:
+					r.column (name,types[i],maxLength * 2);
+					break;
+				default:
+					r.column (name,types[i]);
+					break;
+				}
+			}
+		return r;
+		}
+
+	/**
+	 * Parse the column mix. VARCHAR columns become NVARCHAR when they hold
+	 * characters outside ASCII.
+	 */
+
+	protected int[] types() {
+		String[] names = columns.split (",");
+		int[] types = new int[names.length];
+		for (int i=0; i<names.length; ++i) {
+			switch (names[i].trim().toUpperCase()) {
+				case "INTEGER": types[i] = Types.INTEGER; break;
+				case "BIGINT": types[i] = Types.BIGINT; break;
+				case "DECIMAL": types[i] = Types.DECIMAL; break;
+				case "TIMESTAMP": types[i] = Types.TIMESTAMP; break;
+				case "VARCHAR": types[i] = (multibyte > 0) ? Types.NVARCHAR : Types.VARCHAR; break;
+				default: throw new IllegalArgumentException ("Unsupported column type " + names[i]);
+				}
+			}
+		return types;
+		}
+
+	}
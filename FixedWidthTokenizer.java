@@ -0,0 +1,54 @@
+package SQLServerBulkRecordDelimited;
+
+public class FixedWidthTokenizer extends ColumnTokenizer {
+
+	// Character position and length of each field, and the padding removed
+	protected int[] starts;
+	protected int[] lengths;
+	protected FieldTrim[] trims;
+
+	/**
+	* Construct FixedWidthTokenizer for fields at fixed positions. A field
+	* with a negative start is not in the row and is always empty.
+	*
+	* @param  starts   Base-0 character position of each field
+	* @param  lengths  Length of each field in characters
+	* @param  trims    Padding removed from each field
+	*/
+
+	public FixedWidthTokenizer(int[] starts, int[] lengths, FieldTrim[] trims) {
+		super(starts.length);
+		this.starts = starts;
+		this.lengths = lengths;
+		this.trims = trims;
+		}
+
+	/**
+	* Slice a row into fields by position. Fields past the end of a short
+	* row are empty, and characters after the last field are ignored.
+	*
+	* @param  row  Row to slice
+	* @return Number of fields, always the number defined
+	*/
+
+	@Override
+	public int tokenize(CharSequence row) {
+		text = row;
+		int length = row.length();
+		for (int i=0; i<starts.length; ++i) {
+			int start = (starts[i] < 0) ? length : Math.min(starts[i], length);
+			int end = Math.min(start + lengths[i], length);
+			FieldTrim trim = trims[i];
+			if (trim == FieldTrim.LEFT || trim == FieldTrim.BOTH) {
+				while (start < end && row.charAt(start) == ' ') ++start;
+				}
+			if (trim == FieldTrim.RIGHT || trim == FieldTrim.BOTH) {
+				while (end > start && row.charAt(end - 1) == ' ') --end;
+				}
+			add(i, start, end);
+			}
+		count = starts.length;
+		return count;
+		}
+
+	}
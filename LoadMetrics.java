@@ -0,0 +1,206 @@
+package SQLServerBulkRecordDelimited;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings for one load, shared by the record, its readers and
+ * any copies parsing on other threads. Where the time goes:
+ *
+ * next()		reading, splitting and, with parallel(), pipeline() or
+ * 				rejects(), converting rows or waiting for them
+ * getRowData()	converting rows
+ * driver		between getRowData() and the following next(), which is
+ * 				the driver sending rows to the server
+ * fill wait	reading the file, part of next()
+ *
+ * Conversion time per column is measured on one row in sampleInterval,
+ * since timing every value would cost more than many conversions.
+ */
+
+public class LoadMetrics implements LoadMetricsMBean {
+
+	protected final long startNanos = System.nanoTime();
+
+	// Rows delivered, and bytes read. Bytes are characters in STREAM mode,
+	// and decompressed bytes for compressed files.
+	protected final LongAdder rows = new LongAdder();
+	protected final LongAdder bytes = new LongAdder();
+
+	// Time in each stage
+	protected final LongAdder nextNanos = new LongAdder();
+	protected final LongAdder getRowDataNanos = new LongAdder();
+	protected final LongAdder driverNanos = new LongAdder();
+	protected final LongAdder fillNanos = new LongAdder();
+	protected final LongAdder fills = new LongAdder();
+
+	// Per loaded column
+	protected final String[] columnNames;
+	protected final LongAdder[] nulls;
+	protected final LongAdder[] conversionNanos;
+	protected final LongAdder[] conversionSamples;
+
+	// Rows between conversion timings, 0 for none
+	protected final int sampleInterval;
+
+	/**
+	 * Create metrics for a load.
+	 * @param columnNames		Names of the loaded columns
+	 * @param sampleInterval	Rows between conversion timings, 0 for none
+	 */
+
+	public LoadMetrics (String[] columnNames,int sampleInterval) {
+		this.columnNames = columnNames;
+		this.sampleInterval = sampleInterval;
+		this.nulls = adders (columnNames.length);
+		this.conversionNanos = adders (columnNames.length);
+		this.conversionSamples = adders (columnNames.length);
+		}
+
+	protected static LongAdder[] adders (int n) {
+		LongAdder[] a = new LongAdder[n];
+		for (int i=0; i<n; ++i) a[i] = new LongAdder();
+		return a;
+		}
+
+	//--------------------------------------------------------------------------
+	//	Updates
+	//--------------------------------------------------------------------------
+
+	/**
+	 * Note a read from the file.
+	 * @param count	Bytes, or characters in STREAM mode
+	 * @param nanos	Time waiting for the read
+	 */
+
+	public void fill (long count,long nanos) {
+		if (count > 0) bytes.add (count);
+		fillNanos.add (nanos);
+		fills.increment();
+		}
+
+	/**
+	 * Note the nulls in a converted row.
+	 * @param row	Converted values of the loaded columns
+	 */
+
+	public void nulls (Object[] row) {
+		for (int k=0; k<row.length; ++k) if (row[k] == null) nulls[k].increment();
+		}
+
+	/**
+	 * Note the nulls in a row parsed into a ColumnBatch.
+	 * @param batch	Block holding the row
+	 * @param row	Row in the block
+	 */
+
+	public void nulls (ColumnBatch batch,int row) {
+		for (int k=0; k<nulls.length; ++k) if (batch.isNull (k,row)) nulls[k].increment();
+		}
+
+	/**
+	 * Note the time taken to convert one value.
+	 * @param column	Base-0 loaded column number
+	 * @param nanos		Conversion time
+	 */
+
+	public void conversion (int column,long nanos) {
+		conversionNanos[column].add (nanos);
+		conversionSamples[column].increment();
+		}
+
+	//--------------------------------------------------------------------------
+	//	LoadMetricsMBean
+	//--------------------------------------------------------------------------
+
+	@Override
+	public long getRows() {
+		return rows.sum();
+		}
+
+	@Override
+	public long getBytes() {
+		return bytes.sum();
+		}
+
+	@Override
+	public double getRowsPerSecond() {
+		return getRows() * 1e9 / Math.max (1,System.nanoTime() - startNanos);
+		}
+
+	@Override
+	public double getBytesPerSecond() {
+		return getBytes() * 1e9 / Math.max (1,System.nanoTime() - startNanos);
+		}
+
+	@Override
+	public long getElapsedMillis() {
+		return (System.nanoTime() - startNanos) / 1000000;
+		}
+
+	@Override
+	public long getNextMillis() {
+		return nextNanos.sum() / 1000000;
+		}
+
+	@Override
+	public long getGetRowDataMillis() {
+		return getRowDataNanos.sum() / 1000000;
+		}
+
+	@Override
+	public long getDriverMillis() {
+		return driverNanos.sum() / 1000000;
+		}
+
+	@Override
+	public long getFillWaitMillis() {
+		return fillNanos.sum() / 1000000;
+		}
+
+	@Override
+	public long getFills() {
+		return fills.sum();
+		}
+
+	@Override
+	public String[] getColumnNames() {
+		return columnNames.clone();
+		}
+
+	@Override
+	public long[] getColumnNulls() {
+		long[] a = new long[nulls.length];
+		for (int k=0; k<a.length; ++k) a[k] = nulls[k].sum();
+		return a;
+		}
+
+	/**
+	 * Average conversion time of each loaded column, over the sampled rows.
+	 * @return Nanoseconds per value, 0 where no rows were sampled
+	 */
+
+	@Override
+	public double[] getColumnConversionNanos() {
+		double[] a = new double[conversionNanos.length];
+		for (int k=0; k<a.length; ++k) {
+			long n = conversionSamples[k].sum();
+			a[k] = (n == 0) ? 0 : (double) conversionNanos[k].sum() / n;
+			}
+		return a;
+		}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append (String.format ("rows=%d (%.0f/s) bytes=%d (%.1f MB/s) next=%d ms getRowData=%d ms driver=%d ms fillWait=%d ms fills=%d",
+			getRows(),getRowsPerSecond(),getBytes(),getBytesPerSecond() / (1 << 20),getNextMillis(),getGetRowDataMillis(),getDriverMillis(),getFillWaitMillis(),getFills()));
+		long[] n = getColumnNulls();
+		double[] c = getColumnConversionNanos();
+		for (int k=0; k<columnNames.length; ++k) {
+			sb.append (String.format ("%n  %s nulls=%d",columnNames[k],n[k]));
+			if (sampleInterval > 0) sb.append (String.format (" convert=%.0f ns",c[k]));
+			}
+		return sb.toString();
+		}
+
+	}
@@ -0,0 +1,19 @@
+package SQLServerBulkRecordDelimited;
+
+/**
+ * Receiver of periodic load metrics from a record set up with
+ * metricsListener(). Called on the thread running the bulk copy, so it
+ * should return quickly. Exceptions are ignored.
+ */
+
+public interface LoadMetricsListener {
+
+	/**
+	 * Report progress of a load.
+	 * @param metrics	Live metrics of the load
+	 * @param done		true for the final report, made by close()
+	 */
+
+	void metrics (LoadMetrics metrics,boolean done);
+
+	}
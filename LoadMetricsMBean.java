@@ -0,0 +1,23 @@
+package SQLServerBulkRecordDelimited;
+
+/**
+ * JMX view of LoadMetrics. Times are totals in milliseconds since open().
+ */
+
+public interface LoadMetricsMBean {
+
+	long getRows();
+	long getBytes();
+	double getRowsPerSecond();
+	double getBytesPerSecond();
+	long getElapsedMillis();
+	long getNextMillis();
+	long getGetRowDataMillis();
+	long getDriverMillis();
+	long getFillWaitMillis();
+	long getFills();
+	String[] getColumnNames();
+	long[] getColumnNulls();
+	double[] getColumnConversionNanos();
+
+	}
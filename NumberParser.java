@@ -0,0 +1,202 @@
+package SQLServerBulkRecordDelimited;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Numeric parsing directly from a range of characters, without creating a
+ * String. Each method keeps the semantics of the String-based conversion
+ * it replaces, and falls back to that conversion for input outside its
+ * fast path, such as exponents or values wider than a long.
+ */
+
+public class NumberParser {
+
+	// Powers of ten that fit in a long
+	protected static final long[] POW10 = new long[19];
+	static {
+		POW10[0] = 1;
+		for (int i=1; i<POW10.length; ++i) POW10[i] = POW10[i - 1] * 10;
+		}
+
+	/**
+	 * Parse an int with the semantics of Integer.valueOf(String): optional
+	 * sign, decimal digits only, no whitespace.
+	 * @throws NumberFormatException
+	 */
+
+	public static int parseInt (CharSequence s,int start,int end) {
+		long v = parseIntegral (s,start,end,Integer.MIN_VALUE,Integer.MAX_VALUE);
+		return (int) v;
+		}
+
+	/**
+	 * Parse a short with the semantics of Short.valueOf(String).
+	 * @throws NumberFormatException
+	 */
+
+	public static short parseShort (CharSequence s,int start,int end) {
+		long v = parseIntegral (s,start,end,Short.MIN_VALUE,Short.MAX_VALUE);
+		return (short) v;
+		}
+
+	/**
+	 * Parse a BIGINT with the semantics of
+	 * new BigDecimal(value.trim()).setScale(0, RoundingMode.DOWN).longValueExact():
+	 * surrounding whitespace is ignored and any fraction is truncated.
+	 * @throws NumberFormatException
+	 * @throws ArithmeticException on overflow
+	 */
+
+	public static long parseBigint (CharSequence s,int start,int end) {
+
+		// Trim as String.trim() does
+		while (start < end && s.charAt(start) <= ' ') ++ start;
+		while (end > start && s.charAt(end - 1) <= ' ') -- end;
+
+		int i = start;
+		boolean negative = false;
+		if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+			negative = s.charAt(i) == '-';
+			++ i;
+			}
+
+		// Accumulate negatively so that Long.MIN_VALUE fits.
+		long v = 0;
+		int digits = 0;
+		for (; i < end; ++i) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') break;
+			if (v < Long.MIN_VALUE / 10) return bigintSlow (s,start,end);
+			long next = v * 10 - (c - '0');
+			if (next > v) return bigintSlow (s,start,end);
+			v = next;
+			++ digits;
+			}
+
+		// Truncate a fraction, which must be digits only.
+		if (i < end && s.charAt(i) == '.') {
+			++ i;
+			for (; i < end; ++i) {
+				char c = s.charAt(i);
+				if (c < '0' || c > '9') break;
+				++ digits;
+				}
+			}
+
+		if (i != end || digits == 0) return bigintSlow (s,start,end);
+		if (negative) return v;
+		if (v == Long.MIN_VALUE) throw new ArithmeticException ("Overflow");
+		return -v;
+		}
+
+	/**
+	 * Parse a DECIMAL or NUMERIC with the semantics of
+	 * new BigDecimal(value.trim()).setScale(scale, RoundingMode.HALF_UP).
+	 * Values of up to 18 digits are built from an unscaled long.
+	 * @throws NumberFormatException
+	 */
+
+	public static BigDecimal parseDecimal (CharSequence s,int start,int end,int scale) {
+		return parseDecimal (s,start,end,scale,null);
+		}
+
+	/**
+	 * Parse a DECIMAL or NUMERIC, taking values built from an unscaled long
+	 * from a cache of shared BigDecimals.
+	 * @param boxes	Decimal cache of the column, or null
+	 * @throws NumberFormatException
+	 */
+
+	public static BigDecimal parseDecimal (CharSequence s,int start,int end,int scale,BoxCache boxes) {
+
+		while (start < end && s.charAt(start) <= ' ') ++ start;
+		while (end > start && s.charAt(end - 1) <= ' ') -- end;
+
+		int i = start;
+		boolean negative = false;
+		if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+			negative = s.charAt(i) == '-';
+			++ i;
+			}
+
+		long unscaled = 0;
+		int digits = 0;
+		int fraction = -1;
+		for (; i < end; ++i) {
+			char c = s.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (++digits > 18) return decimalSlow (s,start,end,scale);
+				unscaled = unscaled * 10 + (c - '0');
+				if (fraction >= 0) ++ fraction;
+				}
+			else if (c == '.' && fraction < 0) fraction = 0;
+			else return decimalSlow (s,start,end,scale);
+			}
+		if (digits == 0) return decimalSlow (s,start,end,scale);
+		if (fraction < 0) fraction = 0;
+
+		// Round half up, away from zero, or extend to the column scale.
+		if (fraction > scale) {
+			int shift = fraction - scale;
+			if (shift >= POW10.length) return decimalSlow (s,start,end,scale);
+			long p = POW10[shift];
+			long q = unscaled / p;
+			if ((unscaled % p) * 2 >= p) ++ q;
+			unscaled = q;
+			}
+		else if (fraction < scale) {
+			int shift = scale - fraction;
+			if (shift >= POW10.length || unscaled > Long.MAX_VALUE / POW10[shift]) return decimalSlow (s,start,end,scale);
+			unscaled *= POW10[shift];
+			}
+
+		if (boxes != null) return boxes.decimal (negative ? -unscaled : unscaled,scale);
+		return BigDecimal.valueOf (negative ? -unscaled : unscaled,scale);
+		}
+
+	/**
+	 * Parse optional sign and digits into a bounded range.
+	 */
+
+	protected static long parseIntegral (CharSequence s,int start,int end,long min,long max) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+			negative = s.charAt(i) == '-';
+			++ i;
+			}
+		if (i == end || end - i > 18) return Long.parseLong (verify (s,start,end,min,max));
+		long v = 0;
+		for (; i < end; ++i) {
+			char c = s.charAt(i);
+			// Other digits, such as Arabic-Indic, and errors are left to the String-based parser
+			if (c < '0' || c > '9') return Long.parseLong (verify (s,start,end,min,max));
+			v = v * 10 + (c - '0');
+			}
+		if (negative) v = -v;
+		if (v < min || v > max) return Long.parseLong (verify (s,start,end,min,max));
+		return v;
+		}
+
+	/**
+	 * Check a value outside the fast path against its range using the
+	 * String-based parser, which raises the usual exceptions.
+	 */
+
+	protected static String verify (CharSequence s,int start,int end,long min,long max) {
+		String value = s.subSequence(start,end).toString();
+		if (max == Integer.MAX_VALUE) Integer.parseInt (value);
+		else Short.parseShort (value);
+		return value;
+		}
+
+	protected static long bigintSlow (CharSequence s,int start,int end) {
+		return new BigDecimal (s.subSequence(start,end).toString().trim()).setScale (0,RoundingMode.DOWN).longValueExact();
+		}
+
+	protected static BigDecimal decimalSlow (CharSequence s,int start,int end,int scale) {
+		return new BigDecimal (s.subSequence(start,end).toString().trim()).setScale (scale,RoundingMode.HALF_UP);
+		}
+
+	}
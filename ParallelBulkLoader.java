@@ -0,0 +1,349 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.FileInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.microsoft.sqlserver.jdbc.*;
+
+public class ParallelBulkLoader {
+
+	/**
+	 * Source of connections, one per stream.
+	 */
+
+	public interface ConnectionFactory {
+		Connection getConnection() throws SQLException;
+		}
+
+	/**
+	 * Outcome of a load. Each stream reports its rows and any error.
+	 */
+
+	public static class Result {
+
+		protected long[] bounds;
+		protected long[] rows;
+		protected Exception[] errors;
+		protected long rejected = 0;
+
+		Result (long[] bounds) {
+			this.bounds = bounds;
+			this.rows = new long[bounds.length - 1];
+			this.errors = new Exception[bounds.length - 1];
+			}
+
+		/**
+		 * @return Number of streams
+		 */
+
+		public int getStreams() {
+			return rows.length;
+			}
+
+		/**
+		 * @param stream	Base-0 stream number
+		 * @return Rows read by the stream
+		 */
+
+		public long getRowCount (int stream) {
+			return rows[stream];
+			}
+
+		/**
+		 * @return Rows read by all streams
+		 */
+
+		public long getRowCount() {
+			long total = 0;
+			for (long r: rows) total += r;
+			return total;
+			}
+
+		/**
+		 * @return Rows rejected by all streams
+		 */
+
+		public long getRejected() {
+			return rejected;
+			}
+
+		/**
+		 * @param stream	Base-0 stream number
+		 * @return Error that ended the stream, or null
+		 */
+
+		public Exception getError (int stream) {
+			return errors[stream];
+			}
+
+		/**
+		 * @return Errors from all failed streams
+		 */
+
+		public List<Exception> getErrors() {
+			List<Exception> list = new ArrayList<>();
+			for (Exception e: errors) if (e != null) list.add (e);
+			return list;
+			}
+
+		/**
+		 * @return true if every stream completed
+		 */
+
+		public boolean isSuccess() {
+			for (Exception e: errors) if (e != null) return false;
+			return true;
+			}
+
+		/**
+		 * @param stream	Base-0 stream number
+		 * @return Offset of the first byte loaded by the stream
+		 */
+
+		public long getStart (int stream) {
+			return bounds[stream];
+			}
+
+		/**
+		 * @param stream	Base-0 stream number
+		 * @return Offset one past the last byte loaded by the stream
+		 */
+
+		public long getEnd (int stream) {
+			return bounds[stream + 1];
+			}
+
+		}
+
+	// Record definition, copied for each stream
+	protected SQLServerBulkRecordDelimited record;
+
+	// Destination of each stream
+	protected BulkRecordSink sink;
+	protected SQLServerBulkCopyOptions options = null;
+
+	// Number of concurrent streams
+	protected int streams = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Load a file into a table over several connections, each running its
+	 * own SQLServerBulkCopy.
+	 * @param factory	Source of connections
+	 * @param table		Destination table name
+	 * @param record	Record definition, not opened
+	 */
+
+	public ParallelBulkLoader (ConnectionFactory factory,String table,SQLServerBulkRecordDelimited record) {
+		this.record = record;
+		this.sink = (stream,rec) -> {
+			try (Connection con = factory.getConnection();
+				SQLServerBulkCopy bcp = new SQLServerBulkCopy (con)) {
+				bcp.setDestinationTableName (table);
+				if (options != null) bcp.setBulkCopyOptions (options);
+				bcp.writeToServer (rec);
+				}
+			};
+		}
+
+	/**
+	 * Load a file into any consumer of bulk records.
+	 * @param sink		Consumer of each stream
+	 * @param record	Record definition, not opened
+	 */
+
+	public ParallelBulkLoader (BulkRecordSink sink,SQLServerBulkRecordDelimited record) {
+		this.record = record;
+		this.sink = sink;
+		}
+
+	/**
+	 * Set the bulk copy options used by each connection. Table lock should
+	 * be set to allow concurrent bulk streams into a heap.
+	 * @param options	Bulk copy options
+	 * @return this
+	 */
+
+	public ParallelBulkLoader options (SQLServerBulkCopyOptions options) {
+		this.options = options;
+		return this;
+		}
+
+	/**
+	 * Set the number of concurrent streams. Defaults to the number of
+	 * processors.
+	 * @param streams	Number of streams
+	 * @return this
+	 */
+
+	public ParallelBulkLoader streams (int streams) {
+		this.streams = streams;
+		return this;
+		}
+
+	/**
+	 * Split the file into row-aligned byte ranges and load each range on
+	 * its own stream. Streams run to completion independently, so one
+	 * failed stream does not stop the others. With rejects(), every stream
+	 * writes to one reject file and the limits are for the whole load.
+	 * @return Row counts and errors for each stream
+	 * @throws SQLServerException if the file cannot be split, or the
+	 * 			rejects of all streams exceed the limits
+	 */
+
+	public Result load() throws SQLServerException {
+
+		long[] bounds;
+		List<String> files;
+		try {
+			files = record.resolveFiles();
+			}
+		catch (Exception ex) {
+			throw new SQLServerException (ex.getMessage(),null,0,ex);
+			}
+		if (files.size() > 1) throw new SQLServerException ("File=" + record.sourceName() + ", Err=Several files cannot be split into ranges, load them with one record",null,0,null);
+		if (record.recordLength > 0) throw new SQLServerException ("File=" + record.sourceName() + ", Err=A file of fixed-length records cannot be split into ranges",null,0,null);
+		if (record.quote != 0) throw new SQLServerException ("File=" + record.sourceName() + ", Err=A file with quoted fields cannot be split into ranges",null,0,null);
+
+		try (FileInputStream fis = new FileInputStream (files.get (0))) {
+			FileChannel channel = fis.getChannel();
+			RowAlignedSplitter splitter = new RowAlignedSplitter (channel,RowAlignedSplitter.delimiterBytes(record.rowDelimiter,Charset.forName(record.encoding)));
+			long end = Math.min (record.rangeEnd,channel.size());
+			long start = splitter.skipRows (record.rangeStart,end,(record.rangeStart == 0) ? record.skipLines : 0);
+			bounds = splitter.split (start,end,streams);
+			}
+		catch (Exception ex) {
+			throw new SQLServerException (ex.getMessage(),null,0,ex);
+			}
+
+		// One reject log for every stream
+		RejectLog rejects = null;
+		if (record.rejectFile != null) {
+			try {
+				rejects = record.newRejectLog();
+				}
+			catch (Exception ex) {
+				throw new SQLServerException ("File=" + record.rejectFile + ", Err=" + ex.getMessage(),null,0,ex);
+				}
+			}
+		final RejectLog log = rejects;
+
+		Result result = new Result (bounds);
+		ExecutorService executor = Executors.newFixedThreadPool (result.getStreams());
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (int i=0; i<result.getStreams(); ++i) {
+			final int k = i;
+			futures.add (executor.submit (() -> {
+				SQLServerBulkRecordDelimited rec = null;
+				try {
+					SQLServerBulkRecordDelimited c = record.copy();
+					c.rejects = log;
+					rec = c.range (bounds[k],bounds[k+1]).open();
+					CountingRecord counter = new CountingRecord (rec);
+					sink.write (k,counter);
+					result.rows[k] = counter.rows;
+					}
+				catch (Exception e) {
+					String msg = MessageFormat.format ("Stream={0}, Range={1}-{2}, Err={3}",k,Long.toString(bounds[k]),Long.toString(bounds[k+1]),e.getMessage());
+					result.errors[k] = new SQLServerException (msg,null,0,e);
+					}
+				finally {
+					if (rec != null) try { rec.close(); } catch (Exception e) { }
+					}
+				}));
+			}
+
+		executor.shutdown();
+		try {
+			for (Future<?> f: futures) {
+				try {
+					f.get();
+					}
+				catch (Exception e) {
+					throw new SQLServerException (e.getMessage(),null,0,e);
+					}
+				}
+			}
+		finally {
+			if (log != null) log.close();
+			}
+
+		// Limits are tested again once every row has been read
+		if (log != null) {
+			result.rejected = log.getRejected();
+			if (!log.withinLimits()) {
+				String msg = MessageFormat.format ("File={0}, Err=Rejects exceed {1}, {2} of {3} rows rejected",record.sourceName(),log.limits(),log.getRejected(),log.getRowsRead());
+				throw new SQLServerException (msg,null,0,null);
+				}
+			}
+
+		return result;
+		}
+
+	/**
+	 * Record wrapper counting the rows handed to the sink.
+	 */
+
+	protected static class CountingRecord implements ISQLServerBulkRecord {
+
+		protected ISQLServerBulkRecord record;
+		protected long rows = 0;
+
+		CountingRecord (ISQLServerBulkRecord record) {
+			this.record = record;
+			}
+
+		@Override
+		public Set<Integer> getColumnOrdinals() {
+			return record.getColumnOrdinals();
+			}
+
+		@Override
+		public String getColumnName (int column) {
+			return record.getColumnName (column);
+			}
+
+		@Override
+		public int getColumnType (int column) {
+			return record.getColumnType (column);
+			}
+
+		@Override
+		public int getPrecision (int column) {
+			return record.getPrecision (column);
+			}
+
+		@Override
+		public int getScale (int column) {
+			return record.getScale (column);
+			}
+
+		@Override
+		public boolean isAutoIncrement (int column) {
+			return record.isAutoIncrement (column);
+			}
+
+		@Override
+		public Object[] getRowData() throws SQLServerException {
+			return record.getRowData();
+			}
+
+		@Override
+		public boolean next() throws SQLServerException {
+			boolean more = record.next();
+			if (more) ++ rows;
+			return more;
+			}
+
+		}
+
+	}
@@ -0,0 +1,384 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompress a gzip file, inflating its members in parallel. Files written
+ * by pigz or by concatenating gzip files hold many members, each of which
+ * can be inflated independently once its start is known.
+ *
+ * The file is first scanned for byte sequences that look like a member
+ * header. Each candidate is inflated speculatively by a worker into its own
+ * bounded queue of blocks. The reader takes blocks from the member starting
+ * where the previous member ended, and cancels candidates that fell inside
+ * a member. A single-member file is inflated by one worker, ahead of the
+ * reader.
+ */
+
+public class ParallelGzipInputStream extends InputStream {
+
+	// Size of decompressed blocks, compressed reads and scan blocks
+	protected static int BLOCKSIZE = 1 << 18;
+	protected static int INPUT_SIZE = 1 << 16;
+	protected static int SCAN_SIZE = 1 << 20;
+
+	// Decompressed blocks buffered per member. Memory held is at most
+	// 2 * threads * QUEUE_BLOCKS * BLOCKSIZE.
+	protected static int QUEUE_BLOCKS = 16;
+
+	// Marks the end of a member in its queue
+	protected static final Object END = new Object();
+
+	/**
+	 * Member inflated by a worker from a candidate header offset.
+	 */
+
+	protected class Member implements Runnable {
+		final long start;
+		final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_BLOCKS);
+
+		// Set when the candidate turns out to lie inside another member
+		volatile boolean cancelled = false;
+
+		// Offset one past the trailer, set before END is queued
+		volatile long end = -1;
+
+		// Compressed input, buffer holds the file from filePosition - inLength
+		byte[] in = new byte[INPUT_SIZE];
+		int inIndex = 0;
+		int inLength = 0;
+		long filePosition;
+
+		Member (long start) {
+			this.start = start;
+			this.filePosition = start;
+			}
+
+		/**
+		 * Stop the worker. Workers are never interrupted, since that would
+		 * close the shared channel, so space is made in the queue instead.
+		 */
+
+		void cancel() {
+			cancelled = true;
+			queue.clear();
+			}
+
+		@Override
+		public void run() {
+			Inflater inflater = new Inflater (true);
+			try {
+				readHeader();
+				CRC32 crc = new CRC32();
+				byte[] out = new byte[BLOCKSIZE];
+				int outLength = 0;
+				long total = 0;
+				inflater.setInput (in,inIndex,inLength - inIndex);
+
+				while (!inflater.finished()) {
+					if (inflater.needsInput()) {
+						if (!refill()) throw new EOFException ("Unexpected end of gzip member at offset " + start);
+						inflater.setInput (in,0,inLength);
+						}
+					if (inflater.needsDictionary()) throw new ZipException ("Gzip member at offset " + start + " needs a dictionary");
+					int n = inflater.inflate (out,outLength,out.length - outLength);
+					outLength += n;
+					if (outLength == out.length) {
+						crc.update (out,0,outLength);
+						total += outLength;
+						queue.put (out);
+						if (cancelled) return;
+						out = new byte[BLOCKSIZE];
+						outLength = 0;
+						}
+					}
+
+				if (outLength > 0) {
+					crc.update (out,0,outLength);
+					total += outLength;
+					queue.put (Arrays.copyOf (out,outLength));
+					}
+
+				// Trailer holds CRC-32 and length modulo 2^32 of the data
+				inIndex = inLength - inflater.getRemaining();
+				long expectCrc = readInt();
+				long expectSize = readInt();
+				if (expectCrc != crc.getValue() || expectSize != (total & 0xFFFFFFFFL)) throw new ZipException ("Corrupt gzip member at offset " + start);
+				end = filePosition - (inLength - inIndex);
+				queue.put (END);
+				}
+			catch (InterruptedException e) {
+				}
+			catch (DataFormatException e) {
+				fail (new ZipException ("Invalid gzip data at offset " + start + ": " + e.getMessage()));
+				}
+			catch (IOException e) {
+				fail (e);
+				}
+			finally {
+				inflater.end();
+				}
+			}
+
+		/**
+		 * Pass an error to the reader, after any blocks already queued.
+		 */
+
+		protected void fail (IOException e) {
+			if (cancelled) return;
+			try {
+				queue.put (e);
+				}
+			catch (InterruptedException x) {
+				}
+			}
+
+		/**
+		 * Read the member header, leaving the input at the compressed data.
+		 */
+
+		protected void readHeader() throws IOException {
+			if (readByte() != 0x1f || readByte() != 0x8b || readByte() != 8) throw new ZipException ("Not in gzip format at offset " + start);
+			int flags = readByte();
+			for (int i=0; i<6; ++i) readByte();
+			if ((flags & 4) != 0) {
+				int length = readByte() | (readByte() << 8);
+				for (int i=0; i<length; ++i) readByte();
+				}
+			if ((flags & 8) != 0) while (readByte() != 0);
+			if ((flags & 16) != 0) while (readByte() != 0);
+			if ((flags & 2) != 0) {
+				readByte();
+				readByte();
+				}
+			}
+
+		protected long readInt() throws IOException {
+			return (readByte() | (readByte() << 8) | (readByte() << 16) | ((long) readByte() << 24)) & 0xFFFFFFFFL;
+			}
+
+		protected int readByte() throws IOException {
+			if (inIndex >= inLength && !refill()) throw new EOFException ("Unexpected end of gzip member at offset " + start);
+			return in[inIndex++] & 0xff;
+			}
+
+		/**
+		 * Read the next block of compressed input into the buffer.
+		 * @return false at end of file
+		 */
+
+		protected boolean refill() throws IOException {
+			if (cancelled) throw new ZipException ("Cancelled");
+			int n = channel.read (ByteBuffer.wrap (in),filePosition);
+			if (n <= 0) return false;
+			filePosition += n;
+			inIndex = 0;
+			inLength = n;
+			return true;
+			}
+		}
+
+	// Compressed file, read with positional reads by every worker
+	protected FileChannel channel;
+	protected long size;
+
+	// Offsets that may start a member, in file order
+	protected long[] candidates;
+	protected int nextCandidate = 0;
+
+	// Members started and not yet consumed, keyed by offset
+	protected TreeMap<Long,Member> members = new TreeMap<>();
+	protected int window;
+	protected ExecutorService executor;
+
+	// Consumer position
+	protected long position = 0;
+	protected Member current = null;
+	protected byte[] block = null;
+	protected int blockIndex = 0;
+
+	/**
+	 * Start decompressing a gzip file.
+	 * @param channel	File channel of the compressed file
+	 * @param threads	Number of members inflated at once
+	 * @throws IOException
+	 */
+
+	public ParallelGzipInputStream (FileChannel channel,int threads) throws IOException {
+		this.channel = channel;
+		this.size = channel.size();
+		this.candidates = scan();
+		this.window = Math.max (1,threads) * 2;
+		this.executor = Executors.newFixedThreadPool (Math.max (1,threads),r -> {
+			Thread t = new Thread (r,"BulkRecordDelimited-inflate");
+			t.setDaemon (true);
+			return t;
+			});
+		}
+
+	/**
+	 * Test the first bytes of a file for the gzip magic number.
+	 * @param channel	File channel
+	 * @return true if the file starts with a gzip header
+	 * @throws IOException
+	 */
+
+	public static boolean isGzip (FileChannel channel) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate (3);
+		while (b.hasRemaining()) if (channel.read (b,b.position()) < 0) break;
+		return b.position() == 3 && b.get(0) == (byte) 0x1f && b.get(1) == (byte) 0x8b && b.get(2) == 8;
+		}
+
+	/**
+	 * Find every offset holding ID1, ID2, CM=8 and a flag byte with the
+	 * reserved bits clear.
+	 */
+
+	protected long[] scan() throws IOException {
+		long[] found = new long[16];
+		int count = 0;
+		ByteBuffer b = ByteBuffer.allocate (SCAN_SIZE);
+
+		// Blocks overlap by three bytes so a header may span a boundary
+		for (long p=0; p + 4 <= size; p += SCAN_SIZE - 3) {
+			b.clear();
+			b.limit ((int) Math.min (SCAN_SIZE,size - p));
+			while (b.hasRemaining()) if (channel.read (b,p + b.position()) < 0) break;
+			byte[] a = b.array();
+			int last = b.position() - 4;
+			for (int i=0; i<=last; ++i) {
+				if (a[i] == (byte) 0x1f && a[i+1] == (byte) 0x8b && a[i+2] == 8 && (a[i+3] & 0xe0) == 0) {
+					long offset = p + i;
+					if (count > 0 && found[count-1] >= offset) continue;
+					if (count == found.length) found = Arrays.copyOf (found,count * 2);
+					found[count++] = offset;
+					}
+				}
+			if (p + b.position() >= size) break;
+			}
+		return Arrays.copyOf (found,count);
+		}
+
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		return (read (b,0,1) < 0) ? -1 : b[0] & 0xff;
+		}
+
+	@Override
+	public int read (byte[] b,int off,int len) throws IOException {
+		if (len == 0) return 0;
+		while (block == null || blockIndex >= block.length) {
+			if (!nextBlock()) return -1;
+			}
+		int n = Math.min (len,block.length - blockIndex);
+		System.arraycopy (block,blockIndex,b,off,n);
+		blockIndex += n;
+		return n;
+		}
+
+	/**
+	 * Take the next decompressed block, moving to the next member as each
+	 * one ends.
+	 * @return false at end of file
+	 */
+
+	protected boolean nextBlock() throws IOException {
+		while (true) {
+			if (current == null && !startMember()) return false;
+			Object o;
+			try {
+				o = current.queue.take();
+				}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException ("Interrupted",e);
+				}
+			if (o instanceof IOException) throw (IOException) o;
+			if (o == END) {
+				position = current.end;
+				current = null;
+				continue;
+				}
+			block = (byte[]) o;
+			blockIndex = 0;
+			return true;
+			}
+		}
+
+	/**
+	 * Move to the member starting at the current position, cancelling the
+	 * candidates before it and starting more ahead of it.
+	 * @return false at end of file
+	 */
+
+	protected boolean startMember() throws IOException {
+		if (position >= size) return false;
+
+		Iterator<Map.Entry<Long,Member>> it = members.headMap (position).entrySet().iterator();
+		while (it.hasNext()) {
+			it.next().getValue().cancel();
+			it.remove();
+			}
+		while (nextCandidate < candidates.length && candidates[nextCandidate] < position) ++ nextCandidate;
+		while (nextCandidate < candidates.length && members.size() < window) {
+			Member m = new Member (candidates[nextCandidate++]);
+			executor.execute (m);
+			members.put (m.start,m);
+			}
+
+		current = members.remove (position);
+		if (current != null) return true;
+
+		// Zero padding after the last member is ignored, as gzip does
+		if (isZeroFrom (position)) return false;
+		throw new ZipException ("Not in gzip format at offset " + position);
+		}
+
+	/**
+	 * Test whether the rest of the file is zero bytes.
+	 */
+
+	protected boolean isZeroFrom (long from) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate (INPUT_SIZE);
+		for (long p=from; p<size; ) {
+			b.clear();
+			int n = channel.read (b,p);
+			if (n <= 0) break;
+			for (int i=0; i<n; ++i) if (b.get(i) != 0) return false;
+			p += n;
+			}
+		return true;
+		}
+
+	/**
+	 * Stop the workers. The channel is left for the caller to close.
+	 */
+
+	@Override
+	public void close() {
+		for (Member m: members.values()) m.cancel();
+		members.clear();
+		if (current != null) current.cancel();
+		current = null;
+		executor.shutdown();
+		block = null;
+		}
+
+	}
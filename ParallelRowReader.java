@@ -0,0 +1,307 @@
+package SQLServerBulkRecordDelimited;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import com.microsoft.sqlserver.jdbc.SQLServerException;
+
+public class ParallelRowReader {
+
+	// Rows are handed from workers in blocks to limit queue traffic
+	protected static int BATCH_ROWS = 1024;
+	protected static int QUEUE_BATCHES = 16;
+
+	/**
+	 * Block of converted rows from one chunk. An error, if present, follows
+	 * the rows in the block and is always the last block of its chunk.
+	 */
+
+	protected static class Batch {
+		Object[][] rows;
+		long[] ends;
+		int size = 0;
+		SQLServerException error = null;
+		boolean errorInNext = false;
+		boolean last = false;
+
+		Batch (int capacity) {
+			rows = new Object[capacity][];
+			ends = new long[capacity];
+			}
+		}
+
+	// Record that defines the load, copied for each chunk
+	protected SQLServerBulkRecordDelimited parent;
+
+	// Chunk boundaries, chunk i is [bounds[i], bounds[i+1]). Null for a
+	// single producer reading the whole file.
+	protected long[] bounds;
+	protected int chunks;
+	protected boolean ordered;
+
+	// Worker threads and queues. Ordered mode uses one queue per chunk,
+	// unordered mode shares a single queue.
+	protected ExecutorService executor;
+	protected List<BlockingQueue<Batch>> queues = new ArrayList<>();
+	protected int batchRows;
+	protected int queueBatches;
+
+	// Back-pressure statistics, only updated when a queue operation blocks
+	protected AtomicLong producerWaits = new AtomicLong();
+	protected AtomicLong producerWaitNanos = new AtomicLong();
+	protected volatile long consumerWaits = 0;
+	protected volatile long consumerWaitNanos = 0;
+	protected volatile long rowsDelivered = 0;
+
+	// Consumer position
+	protected int chunk = 0;
+	protected int chunksDone = 0;
+	protected Batch batch = null;
+	protected int index = 0;
+	protected Object[] row = null;
+	protected SQLServerException rowError = null;
+
+	/**
+	 * Start worker threads parsing the chunks of a file.
+	 * @param parent	Record defining the load
+	 * @param bounds	Row-aligned chunk boundaries
+	 * @param threads	Number of worker threads
+	 * @param ordered	Return rows in file order
+	 */
+
+	public ParallelRowReader (SQLServerBulkRecordDelimited parent,long[] bounds,int threads,boolean ordered) {
+		this (parent,bounds,threads,ordered,BATCH_ROWS,QUEUE_BATCHES);
+		}
+
+	/**
+	 * Start a single producer thread that reads and converts the whole file
+	 * ahead of the consumer, so that parsing overlaps the bulk copy send.
+	 * @param parent	Record defining the load
+	 * @param depth		Number of converted rows to buffer
+	 */
+
+	public ParallelRowReader (SQLServerBulkRecordDelimited parent,int depth) {
+		this (parent,null,1,true,Math.max (1,Math.min (BATCH_ROWS,depth / 4)),Math.max (2,depth / Math.max (1,Math.min (BATCH_ROWS,depth / 4))));
+		}
+
+	/**
+	 * Start worker threads with explicit queue sizing.
+	 * @param parent		Record defining the load
+	 * @param bounds		Row-aligned chunk boundaries, or null for the whole file
+	 * @param threads		Number of worker threads
+	 * @param ordered		Return rows in file order
+	 * @param batchRows		Rows per block
+	 * @param queueBatches	Blocks buffered per queue
+	 */
+
+	protected ParallelRowReader (SQLServerBulkRecordDelimited parent,long[] bounds,int threads,boolean ordered,int batchRows,int queueBatches) {
+
+		this.parent = parent;
+		this.bounds = bounds;
+		this.chunks = (bounds == null) ? 1 : bounds.length - 1;
+		this.ordered = ordered;
+		this.batchRows = batchRows;
+		this.queueBatches = queueBatches;
+
+		for (int i=0; i<(ordered ? chunks : 1); ++i) queues.add (new ArrayBlockingQueue<>(queueBatches));
+
+		// Chunks are queued in file order, so the chunk being consumed in
+		// ordered mode is always running or finished.
+		this.executor = Executors.newFixedThreadPool (threads,r -> {
+			Thread t = new Thread (r,"BulkRecordDelimited-parse");
+			t.setDaemon (true);
+			return t;
+			});
+		for (int i=0; i<chunks; ++i) {
+			final int k = i;
+			executor.execute (() -> parse (k,queues.get (ordered ? k : 0)));
+			}
+		executor.shutdown();
+		}
+
+	/**
+	 * Parse one chunk with a copy of the parent record, passing blocks of
+	 * converted rows to the consumer.
+	 * @param k		Chunk number
+	 * @param queue	Queue to receive blocks
+	 */
+
+	protected void parse (int k,BlockingQueue<Batch> queue) {
+
+		Batch b = new Batch (batchRows);
+		SQLServerBulkRecordDelimited rec = null;
+
+		try {
+			rec = (bounds == null) ? parent.copy().open() : parent.copy().range (bounds[k],bounds[k+1]).open();
+			while (true) {
+
+				boolean more;
+				try {
+					more = rec.next();
+					}
+				catch (SQLServerException e) {
+					b.error = e;
+					b.errorInNext = true;
+					break;
+					}
+				if (!more) break;
+
+				try {
+					b.rows[b.size] = rec.getRowData();
+					b.ends[b.size] = rec.rowEnd;
+					++ b.size;
+					}
+				catch (SQLServerException e) {
+					b.error = e;
+					break;
+					}
+
+				if (b.size == batchRows) {
+					put (queue,b);
+					b = new Batch (batchRows);
+					}
+				}
+			}
+		catch (InterruptedException e) {
+			return;
+			}
+		catch (Exception e) {
+			String msg = MessageFormat.format ("Chunk={0}, Err={1}",k,e.getMessage());
+			b.error = new SQLServerException (msg,null,0,e);
+			b.errorInNext = true;
+			}
+		finally {
+			if (rec != null) try { rec.close(); } catch (Exception e) { }
+			}
+
+		try {
+			b.last = true;
+			put (queue,b);
+			}
+		catch (InterruptedException e) {
+			}
+		}
+
+	/**
+	 * Advance to the next row.
+	 * @return true on row, false when all chunks are exhausted
+	 * @throws SQLServerException
+	 */
+
+	public boolean next() throws SQLServerException {
+
+		while (true) {
+
+			if (batch != null) {
+
+				// Next row in the current block
+				if (index < batch.size) {
+					row = batch.rows[index];
+					parent.rowEnd = batch.ends[index];
+					batch.rows[index] = null;
+					++ index;
+					++ parent.rowCount;
+					++ rowsDelivered;
+					return true;
+					}
+
+				// An error follows the rows. Conversion errors are raised by
+				// getRowData() for the row they occurred on.
+				if (batch.error != null) {
+					SQLServerException e = batch.error;
+					batch.error = null;
+					if (batch.errorInNext) throw e;
+					row = null;
+					rowError = e;
+					++ parent.rowCount;
+					return true;
+					}
+
+				if (batch.last) {
+					if (ordered) ++ chunk;
+					else ++ chunksDone;
+					}
+				batch = null;
+				}
+
+			if (ordered ? chunk >= chunks : chunksDone >= chunks) return false;
+			batch = take (queues.get (ordered ? chunk : 0));
+			index = 0;
+			}
+		}
+
+	/**
+	 * Get the current row, or raise the conversion error that occurred on it.
+	 * @return Array of objects
+	 * @throws SQLServerException
+	 */
+
+	public Object[] getRowData() throws SQLServerException {
+		if (rowError != null) {
+			SQLServerException e = rowError;
+			rowError = null;
+			throw e;
+			}
+		return row;
+		}
+
+	/**
+	 * Stop the worker threads.
+	 */
+
+	public void close() {
+		executor.shutdownNow();
+		for (BlockingQueue<Batch> q: queues) q.clear();
+		}
+
+	/**
+	 * Get a snapshot of the queue statistics.
+	 * @return Queue statistics
+	 */
+
+	public QueueStats getStats() {
+		int depth = 0;
+		for (BlockingQueue<Batch> q: queues) depth += q.size();
+		return new QueueStats (depth * batchRows,queues.size() * queueBatches * batchRows,rowsDelivered,
+			producerWaits.get(),producerWaitNanos.get(),consumerWaits,consumerWaitNanos);
+		}
+
+	/**
+	 * Pass a block to a queue, timing any wait for space.
+	 */
+
+	protected void put (BlockingQueue<Batch> queue,Batch b) throws InterruptedException {
+		if (queue.offer (b)) return;
+		long start = System.nanoTime();
+		queue.put (b);
+		producerWaits.incrementAndGet();
+		producerWaitNanos.addAndGet (System.nanoTime() - start);
+		}
+
+	/**
+	 * Wait for the next block from a queue, timing any wait for data.
+	 */
+
+	protected Batch take (BlockingQueue<Batch> queue) throws SQLServerException {
+		try {
+			Batch b = queue.poll();
+			if (b != null) return b;
+			long start = System.nanoTime();
+			b = queue.take();
+			++ consumerWaits;
+			consumerWaitNanos += System.nanoTime() - start;
+			return b;
+			}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			String msg = MessageFormat.format ("Row={0}, Err={1}",parent.rowCount,"Interrupted");
+			throw new SQLServerException (msg,null,0,e);
+			}
+		}
+
+	}
@@ -0,0 +1,91 @@
+package SQLServerBulkRecordDelimited;
+
+/**
+ * Snapshot of the row queue between background parsing threads and the
+ * thread calling next(). Producer waits show the driver is the bottleneck,
+ * consumer waits show parsing is.
+ */
+
+public class QueueStats {
+
+	protected final int depth;
+	protected final int capacity;
+	protected final long rowsDelivered;
+	protected final long producerWaits;
+	protected final long producerWaitNanos;
+	protected final long consumerWaits;
+	protected final long consumerWaitNanos;
+
+	public QueueStats (int depth,int capacity,long rowsDelivered,long producerWaits,long producerWaitNanos,long consumerWaits,long consumerWaitNanos) {
+		this.depth = depth;
+		this.capacity = capacity;
+		this.rowsDelivered = rowsDelivered;
+		this.producerWaits = producerWaits;
+		this.producerWaitNanos = producerWaitNanos;
+		this.consumerWaits = consumerWaits;
+		this.consumerWaitNanos = consumerWaitNanos;
+		}
+
+	/**
+	 * @return Approximate number of converted rows waiting in the queue
+	 */
+
+	public int getDepth() {
+		return depth;
+		}
+
+	/**
+	 * @return Approximate number of rows the queue can hold
+	 */
+
+	public int getCapacity() {
+		return capacity;
+		}
+
+	/**
+	 * @return Rows handed to the consumer so far
+	 */
+
+	public long getRowsDelivered() {
+		return rowsDelivered;
+		}
+
+	/**
+	 * @return Number of times a producer found the queue full
+	 */
+
+	public long getProducerWaits() {
+		return producerWaits;
+		}
+
+	/**
+	 * @return Total time producers spent waiting for queue space
+	 */
+
+	public long getProducerWaitNanos() {
+		return producerWaitNanos;
+		}
+
+	/**
+	 * @return Number of times the consumer found the queue empty
+	 */
+
+	public long getConsumerWaits() {
+		return consumerWaits;
+		}
+
+	/**
+	 * @return Total time the consumer spent waiting for rows
+	 */
+
+	public long getConsumerWaitNanos() {
+		return consumerWaitNanos;
+		}
+
+	@Override
+	public String toString() {
+		return String.format ("depth=%d/%d delivered=%d producerWaits=%d (%.1f ms) consumerWaits=%d (%.1f ms)",
+			depth,capacity,rowsDelivered,producerWaits,producerWaitNanos / 1e6,consumerWaits,consumerWaitNanos / 1e6);
+		}
+
+	}
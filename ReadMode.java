@@ -0,0 +1,25 @@
+package SQLServerBulkRecordDelimited;
+
+/**
+ * Input path used by BufferedReaderDelimited.
+ */
+
+public enum ReadMode {
+
+	/**
+	 * FileInputStream and DecodingReader, the original Reader-based path.
+	 */
+	STREAM,
+
+	/**
+	 * FileChannel reads into a large direct ByteBuffer, decoded with a
+	 * reused CharsetDecoder.
+	 */
+	CHANNEL,
+
+	/**
+	 * File memory-mapped in windows, decoded with a reused CharsetDecoder.
+	 */
+	MAPPED
+
+	}
@@ -0,0 +1,165 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Destination for rows that fail to convert, shared by every copy of a
+ * record in parallel() and pipeline() modes. Rejected rows are written
+ * verbatim to the reject file, so that it can be corrected and loaded with
+ * the same settings, and the reason for each is written to a log file
+ * alongside it.
+ *
+ * The percentage limit is tested against the rows read by every reader
+ * sharing the log, counted by read(), rather than the line number of the
+ * row rejected, which restarts for each file and each parallel chunk.
+ */
+
+public class RejectLog {
+
+	// Percentages are only tested once this many rows have been read
+	protected static long MIN_ROWS = 1000;
+
+	// Reject file, and log file holding the reason for each reject
+	protected final String fileName;
+	protected final String logName;
+	protected final String encoding;
+	protected final String rowDelimiter;
+	protected Writer rows = null;
+	protected Writer log = null;
+
+	// Limits, and rejects so far
+	protected final long maxRejects;
+	protected final double maxPercent;
+	protected long rejected = 0;
+
+	// Rows read by every reader sharing the log
+	protected final LongAdder rowsRead = new LongAdder();
+
+	/**
+	 * Set up a reject file. Any existing reject and log files are removed,
+	 * and new ones created when the first row is rejected.
+	 * @param fileName		Reject file, the log is written to fileName.log
+	 * @param encoding		Encoding of the input file
+	 * @param rowDelimiter	Row delimiter written after each row
+	 * @param maxRejects	Number of rejects allowed
+	 * @param maxPercent	Percentage of rows allowed to be rejected
+	 * @throws IOException
+	 */
+
+	public RejectLog (String fileName,String encoding,char[] rowDelimiter,long maxRejects,double maxPercent) throws IOException {
+		this.fileName = fileName;
+		this.logName = fileName + ".log";
+		this.encoding = encoding;
+		this.rowDelimiter = new String (rowDelimiter);
+		this.maxRejects = maxRejects;
+		this.maxPercent = maxPercent;
+		Files.deleteIfExists (Paths.get (fileName));
+		Files.deleteIfExists (Paths.get (logName));
+		}
+
+	/**
+	 * Record a rejected row.
+	 * @param row		Row as read from the file
+	 * @param file		File holding the row, null when loading a single file
+	 * @param rowNumber	Line number of the row in its file, for the log
+	 * @param offset	Byte offset of the row, -1 if not known
+	 * @param column	Column that failed, null if the row as a whole failed
+	 * @param reason	Error message
+	 * @return false if the reject takes the load over a limit
+	 * @throws IOException
+	 */
+
+	public synchronized boolean reject (String row,String file,long rowNumber,long offset,String column,String reason) throws IOException {
+
+		if (rows == null) {
+			rows = new BufferedWriter (new OutputStreamWriter (new FileOutputStream (fileName,true),encoding));
+			log = new BufferedWriter (new OutputStreamWriter (new FileOutputStream (logName,true),encoding));
+			}
+
+		rows.write (row);
+		rows.write (rowDelimiter);
+		if (file != null) log.write ("File=" + file + ", ");
+		log.write (MessageFormat.format ("Row={0,number,#}, Offset={1,number,#}, Col={2}, Err={3}",rowNumber,offset,column,reason));
+		log.write (System.lineSeparator());
+
+		// Rejects are rare, so both files are kept current for a failed load.
+		rows.flush();
+		log.flush();
+
+		++ rejected;
+		return withinLimits();
+		}
+
+	/**
+	 * Count a row read, whether or not it is rejected. Called by each
+	 * reader sharing the log, from any thread.
+	 */
+
+	public void read() {
+		rowsRead.increment();
+		}
+
+	/**
+	 * Get the number of rows read by every reader sharing the log.
+	 * @return Rows read
+	 */
+
+	public long getRowsRead() {
+		return rowsRead.sum();
+		}
+
+	/**
+	 * Test the rejects so far against the limits, the percentage against
+	 * the rows read so far.
+	 * @return false if a limit is exceeded
+	 */
+
+	public synchronized boolean withinLimits() {
+		if (rejected > maxRejects) return false;
+		long rows = rowsRead.sum();
+		if (rows >= MIN_ROWS && rejected * 100.0 > maxPercent * rows) return false;
+		return true;
+		}
+
+	/**
+	 * Get the number of rows rejected.
+	 * @return Rejected rows
+	 */
+
+	public synchronized long getRejected() {
+		return rejected;
+		}
+
+	/**
+	 * Describe the limits, for error messages.
+	 * @return Limits
+	 */
+
+	public String limits() {
+		return MessageFormat.format ("{0,number,#} rows or {1}%",maxRejects,maxPercent);
+		}
+
+	/**
+	 * Close the reject and log files.
+	 */
+
+	public synchronized void close() {
+		try {
+			if (rows != null) rows.close();
+			if (log != null) log.close();
+			}
+		catch (IOException e) {
+			}
+		rows = null;
+		log = null;
+		}
+
+	}
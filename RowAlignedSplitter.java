@@ -0,0 +1,216 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RowAlignedSplitter {
+
+	// Channel to scan, read with positional reads so it may be shared
+	protected FileChannel channel;
+
+	// Row delimiter as bytes
+	protected byte[] delimiter;
+
+	// Block of the file currently held in memory
+	protected ByteBuffer block;
+	protected long blockStart = -1;
+	protected int blockLength = 0;
+
+	// Default block size
+	protected static int BLOCKSIZE = 1 << 20;
+
+	/**
+	* Construct RowAlignedSplitter over a file channel.
+	*
+	* @param  channel    File channel to scan
+	* @param  delimiter  Row delimiter as bytes, see delimiterBytes()
+	*/
+
+	public RowAlignedSplitter(FileChannel channel, byte[] delimiter) {
+		this.channel = channel;
+		this.delimiter = delimiter;
+		this.block = ByteBuffer.allocate(BLOCKSIZE);
+		}
+
+	/**
+	* Convert a row delimiter to bytes. Row boundaries can only be found on
+	* bytes when the encoding is ASCII-compatible and the delimiter is ASCII,
+	* and from the middle of a file only when the delimiter cannot overlap
+	* itself.
+	*
+	* @param  delimiter  Row delimiter
+	* @param  charset    Character set of the file
+	* @return Delimiter as bytes
+	*/
+
+	public static byte[] delimiterBytes(char[] delimiter, Charset charset) {
+		if (!BufferedReaderDelimited.isAsciiCompatible(charset)) throw new IllegalArgumentException(charset.name() + " is not ASCII-compatible");
+		if (overlaps(delimiter)) throw new IllegalArgumentException("Row delimiter " + new String(delimiter) + " can overlap itself, so rows cannot be found from the middle of the file");
+		byte[] b = new byte[delimiter.length];
+		for (int i=0; i<delimiter.length; ++i) {
+			if (delimiter[i] > 127) throw new IllegalArgumentException("Row delimiter is not ASCII");
+			b[i] = (byte) delimiter[i];
+			}
+		return b;
+		}
+
+	/**
+	* Test whether a delimiter can overlap itself, as ~~ or abab can, when
+	* it begins with what it ends with. In a run such as ~~~ the delimiter
+	* could then be matched one character in, and a split point would land
+	* inside it; only reading from a known row start tells which it is.
+	*
+	* @param  delimiter  Row delimiter
+	* @return true if a proper prefix equals a proper suffix
+	*/
+
+	public static boolean overlaps(char[] delimiter) {
+		int n = delimiter.length;
+		for (int k=1; k<n; ++k) {
+			int j = 0;
+			while (j < k && delimiter[j] == delimiter[n - k + j]) ++j;
+			if (j == k) return true;
+			}
+		return false;
+		}
+
+	/**
+	* Split a byte range into parts, moving each split point forward to the
+	* start of the next row.
+	*
+	* @param  start  Offset of the first row
+	* @param  end    Offset one past the last byte
+	* @param  parts  Requested number of parts
+	* @return Boundaries, part i is [b[i], b[i+1])
+	 * @throws java.io.IOException
+	*/
+
+	public long[] split(long start, long end, int parts) throws IOException {
+
+		List<Long> bounds = new ArrayList<>();
+		bounds.add(start);
+		long size = (end - start) / Math.max(parts, 1);
+
+		for (int k=1; k<parts && size > 0; ++k) {
+			long nominal = start + k * size;
+			long last = bounds.get(bounds.size() - 1);
+			if (nominal <= last) continue;
+			long found = indexOf(nominal, end);
+			if (found < 0) break;
+			long boundary = found + delimiter.length;
+			if (boundary >= end) break;
+			if (boundary > last) bounds.add(boundary);
+			}
+
+		bounds.add(end);
+		long[] b = new long[bounds.size()];
+		for (int i=0; i<b.length; ++i) b[i] = bounds.get(i);
+		return b;
+		}
+
+	/**
+	* Step past a number of rows.
+	*
+	* @param  from  Offset of the first row
+	* @param  end   Offset one past the last byte
+	* @param  rows  Number of rows to skip
+	* @return Offset of the row following the skipped rows, or end
+	 * @throws java.io.IOException
+	*/
+
+	public long skipRows(long from, long end, long rows) throws IOException {
+		long p = from;
+		for (long i=0; i<rows; ++i) {
+			long found = indexOf(p, end);
+			if (found < 0) return end;
+			p = found + delimiter.length;
+			}
+		return p;
+		}
+
+	/**
+	* Count the row delimiters in a byte range.
+	*
+	* @param  from  Offset of the first row
+	* @param  end   Offset one past the last byte
+	* @return Number of complete rows
+	 * @throws java.io.IOException
+	*/
+
+	public long countRows(long from, long end) throws IOException {
+		long count = 0;
+		long p = from;
+		while (true) {
+			long found = indexOf(p, end);
+			if (found < 0) return count;
+			++count;
+			p = found + delimiter.length;
+			}
+		}
+
+	/**
+	* Find the next row delimiter.
+	*
+	* @param  from  Offset to start searching
+	* @param  end   Offset one past the last byte
+	* @return Offset of the delimiter, or -1 if not found
+	 * @throws java.io.IOException
+	*/
+
+	public long indexOf(long from, long end) throws IOException {
+
+		byte first = delimiter[0];
+		long p = from;
+
+		while (p + delimiter.length <= end) {
+
+			// Make sure the block holds at least one complete delimiter from p.
+			if (p < blockStart || p + delimiter.length > blockStart + blockLength) {
+				if (!load(p, end)) return -1;
+				}
+
+			int i = (int) (p - blockStart);
+			int last = blockLength - delimiter.length;
+			for (; i <= last; ++i) {
+				if (block.get(i) == first && matches(i)) return blockStart + i;
+				}
+			p = blockStart + last + 1;
+			}
+
+		return -1;
+		}
+
+	/**
+	* Read a block of the file starting at an offset.
+	*
+	* @return true if the block holds at least one delimiter length
+	*/
+
+	protected boolean load(long position, long end) throws IOException {
+		block.clear();
+		block.limit((int) Math.min(block.capacity(), end - position));
+		while (block.hasRemaining()) {
+			if (channel.read(block, position + block.position()) < 0) break;
+			}
+		block.flip();
+		blockStart = position;
+		blockLength = block.limit();
+		return blockLength >= delimiter.length;
+		}
+
+	/**
+	* Test for the full delimiter at a block index.
+	*/
+
+	protected boolean matches(int index) {
+		for (int j=1; j<delimiter.length; ++j) {
+			if (block.get(index + j) != delimiter[j]) return false;
+			}
+		return true;
+		}
+
+	}
@@ -0,0 +1,393 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.List;
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkRecord;
+
+/**
+ * Writer of converted rows to a binary cache file, replayed by
+ * CachedBulkRecord without parsing the text again. The file holds:
+ *
+ * header	magic, version, the size and modification time of each source
+ * 			file, a digest of the record settings, and the name, type,
+ * 			precision and scale of each column
+ * rows		a marker byte, a null bitmap, then each non-null value as a
+ * 			type tag and its binary form, strings length-prefixed UTF-8
+ * trailer	an end marker and the number of rows
+ *
+ * Rows are written to fileName.tmp, which replaces fileName only when
+ * finish() is called at the end of a complete load.
+ */
+
+public class RowCacheWriter implements AutoCloseable {
+
+	protected static final int MAGIC = 0x42524443;
+	protected static final int VERSION = 2;
+
+	// Row and end markers
+	protected static final int ROW = 1;
+	protected static final int END = 0;
+
+	// Value type tags
+	protected static final int STRING = 'S';
+	protected static final int INTEGER = 'I';
+	protected static final int SHORT = 'H';
+	protected static final int LONG = 'L';
+	protected static final int DECIMAL = 'D';
+	protected static final int LONG_DECIMAL = 'N';
+	protected static final int FLOAT = 'F';
+	protected static final int DOUBLE = 'G';
+	protected static final int BOOLEAN = 'Z';
+	protected static final int DATE = 'd';
+	protected static final int TIME = 't';
+	protected static final int TIMESTAMP = 'T';
+	protected static final int OFFSET_DATETIME = 'O';
+	protected static final int BYTES = 'B';
+
+	protected final Path path;
+	protected final Path tmp;
+	protected DataOutputStream out;
+	protected byte[] nulls;
+	protected byte[] utf8 = new byte[256];
+	protected long rows = 0;
+	protected boolean finished = false;
+
+	/**
+	 * Start a cache file for the rows of a load.
+	 * @param fileName	Cache file
+	 * @param sources	Files the rows are read from
+	 * @param metadata	Record describing the columns
+	 * @param settings	Settings that decide the values, beyond the columns
+	 * @throws IOException
+	 */
+
+	public RowCacheWriter (String fileName,List<String> sources,ISQLServerBulkRecord metadata,String settings) throws IOException {
+		this.path = Paths.get (fileName);
+		this.tmp = Paths.get (fileName + ".tmp");
+		this.out = new DataOutputStream (new BufferedOutputStream (new FileOutputStream (tmp.toFile()),1 << 16));
+		try {
+			writeHeader (sources,metadata,settings);
+			}
+		catch (IOException e) {
+			close();
+			throw e;
+			}
+		}
+
+	/**
+	 * Write the source files, the settings and the column metadata.
+	 */
+
+	protected void writeHeader (List<String> sources,ISQLServerBulkRecord metadata,String settings) throws IOException {
+		out.writeInt (MAGIC);
+		out.writeInt (VERSION);
+		out.writeInt (sources.size());
+		for (String source: sources) {
+			Path p = Paths.get (source);
+			out.writeUTF (new File (source).getAbsolutePath());
+			out.writeLong (Files.size (p));
+			out.writeLong (Files.getLastModifiedTime (p).toMillis());
+			}
+		out.writeUTF (digest (settings));
+		int n = metadata.getColumnOrdinals().size();
+		out.writeInt (n);
+		for (int i=1; i<=n; ++i) {
+			out.writeUTF (metadata.getColumnName (i));
+			out.writeInt (metadata.getColumnType (i));
+			out.writeInt (metadata.getPrecision (i));
+			out.writeInt (metadata.getScale (i));
+			}
+		this.nulls = new byte[(n + 7) / 8];
+		}
+
+	/**
+	 * Digest of the record settings, which may be longer than writeUTF()
+	 * allows.
+	 * @param settings	Settings
+	 * @return SHA-256 of the settings, in hex
+	 */
+
+	protected static String digest (String settings) {
+		try {
+			byte[] d = java.security.MessageDigest.getInstance ("SHA-256").digest (settings.getBytes (StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (byte b: d) sb.append (String.format ("%02x",b));
+			return sb.toString();
+			}
+		catch (java.security.NoSuchAlgorithmException e) {
+			throw new IllegalStateException (e);
+			}
+		}
+
+	/**
+	 * Append a converted row.
+	 * @param row	Values of the columns
+	 * @throws IOException if a value is of a type that cannot be cached
+	 */
+
+	public void write (Object[] row) throws IOException {
+		java.util.Arrays.fill (nulls,(byte) 0);
+		for (int k=0; k<row.length; ++k) if (row[k] == null) nulls[k >> 3] |= 1 << (k & 7);
+		out.write (ROW);
+		out.write (nulls);
+		for (Object o: row) if (o != null) writeValue (o);
+		++ rows;
+		}
+
+	/**
+	 * Append the rows of a block, writing primitive and character values
+	 * straight from its arrays.
+	 * @param batch	Block of rows
+	 * @throws IOException if a value is of a type that cannot be cached
+	 */
+
+	public void write (ColumnBatch batch) throws IOException {
+		int n = batch.getColumnCount();
+		for (int r=0; r<batch.size(); ++r) {
+			java.util.Arrays.fill (nulls,(byte) 0);
+			for (int k=0; k<n; ++k) if (batch.isNull (k,r)) nulls[k >> 3] |= 1 << (k & 7);
+			out.write (ROW);
+			out.write (nulls);
+			for (int k=0; k<n; ++k) if (!batch.isNull (k,r)) writeValue (batch,k,r);
+			++ rows;
+			}
+		}
+
+	/**
+	 * Write a value of a block with the tag writeValue() gives the object
+	 * getRowData() returns for it.
+	 */
+
+	protected void writeValue (ColumnBatch batch,int k,int r) throws IOException {
+		switch (batch.getKind (k)) {
+			case ColumnBatch.LONG:
+				long v = batch.getLong (k,r);
+				switch (batch.getColumnType (k)) {
+					case Types.BIGINT:
+						out.write (LONG);
+						out.writeLong (v);
+						break;
+					case Types.INTEGER:
+					case Types.BIT:
+						out.write (INTEGER);
+						out.writeInt ((int) v);
+						break;
+					default:
+						out.write (SHORT);
+						out.writeShort ((int) v);
+						break;
+					}
+				break;
+			case ColumnBatch.DOUBLE:
+				double d = batch.getDouble (k,r);
+				if (batch.getColumnType (k) == Types.REAL) {
+					out.write (FLOAT);
+					out.writeFloat ((float) d);
+					}
+				else {
+					out.write (DOUBLE);
+					out.writeDouble (d);
+					}
+				break;
+			case ColumnBatch.CHARS:
+				int[] off = batch.getOffsets (k);
+				out.write (STRING);
+				writeChars (batch.getChars (k),off[r],off[r + 1]);
+				break;
+			default:
+				writeValue (batch.getObject (k,r));
+				break;
+			}
+		}
+
+	/**
+	 * Write a range of characters as length-prefixed UTF-8, encoding into a
+	 * reused buffer. Unpaired surrogates are written as '?', as by
+	 * String.getBytes().
+	 */
+
+	protected void writeChars (char[] c,int start,int end) throws IOException {
+		if (utf8.length < (end - start) * 3) utf8 = new byte[(end - start) * 3];
+		byte[] b = utf8;
+		int n = 0;
+		for (int i=start; i<end; ++i) {
+			char ch = c[i];
+			if (ch < 0x80) b[n++] = (byte) ch;
+			else if (ch < 0x800) {
+				b[n++] = (byte) (0xc0 | (ch >> 6));
+				b[n++] = (byte) (0x80 | (ch & 0x3f));
+				}
+			else if (Character.isHighSurrogate (ch) && i + 1 < end && Character.isLowSurrogate (c[i + 1])) {
+				int cp = Character.toCodePoint (ch,c[++i]);
+				b[n++] = (byte) (0xf0 | (cp >> 18));
+				b[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				b[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				b[n++] = (byte) (0x80 | (cp & 0x3f));
+				}
+			else if (Character.isSurrogate (ch)) b[n++] = '?';
+			else {
+				b[n++] = (byte) (0xe0 | (ch >> 12));
+				b[n++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+				b[n++] = (byte) (0x80 | (ch & 0x3f));
+				}
+			}
+		int length = n;
+		while (length >= 0x80) {
+			out.write ((length & 0x7f) | 0x80);
+			length >>>= 7;
+			}
+		out.write (length);
+		out.write (b,0,n);
+		}
+
+	/**
+	 * Write a value with its type tag.
+	 */
+
+	protected void writeValue (Object o) throws IOException {
+		if (o instanceof String) {
+			out.write (STRING);
+			writeBytes (((String) o).getBytes (StandardCharsets.UTF_8));
+			}
+		else if (o instanceof Integer) {
+			out.write (INTEGER);
+			out.writeInt ((Integer) o);
+			}
+		else if (o instanceof Long) {
+			out.write (LONG);
+			out.writeLong ((Long) o);
+			}
+		else if (o instanceof Short) {
+			out.write (SHORT);
+			out.writeShort ((Short) o);
+			}
+		else if (o instanceof BigDecimal) {
+			BigDecimal d = (BigDecimal) o;
+			BigInteger unscaled = d.unscaledValue();
+			if (unscaled.bitLength() < 64) {
+				out.write (DECIMAL);
+				out.writeLong (unscaled.longValue());
+				}
+			else {
+				out.write (LONG_DECIMAL);
+				writeBytes (unscaled.toByteArray());
+				}
+			out.writeInt (d.scale());
+			}
+		else if (o instanceof Double) {
+			out.write (DOUBLE);
+			out.writeDouble ((Double) o);
+			}
+		else if (o instanceof Float) {
+			out.write (FLOAT);
+			out.writeFloat ((Float) o);
+			}
+		else if (o instanceof Boolean) {
+			out.write (BOOLEAN);
+			out.writeBoolean ((Boolean) o);
+			}
+
+		// Dates and times are kept as local values, as sent to the server
+		else if (o instanceof java.sql.Timestamp) {
+			java.sql.Timestamp t = (java.sql.Timestamp) o;
+			out.write (TIMESTAMP);
+			out.writeLong (t.toLocalDateTime().toEpochSecond (java.time.ZoneOffset.UTC));
+			out.writeInt (t.getNanos());
+			}
+		else if (o instanceof java.sql.Date) {
+			out.write (DATE);
+			out.writeLong (((java.sql.Date) o).toLocalDate().toEpochDay());
+			}
+		else if (o instanceof java.sql.Time) {
+			java.sql.Time t = (java.sql.Time) o;
+			out.write (TIME);
+			out.writeInt (t.toLocalTime().toSecondOfDay());
+			out.writeShort ((int) Math.floorMod (t.getTime(),1000L));
+			}
+		else if (o instanceof OffsetDateTime) {
+			OffsetDateTime t = (OffsetDateTime) o;
+			out.write (OFFSET_DATETIME);
+			out.writeLong (t.toEpochSecond());
+			out.writeInt (t.getNano());
+			out.writeInt (t.getOffset().getTotalSeconds());
+			}
+		else if (o instanceof byte[]) {
+			out.write (BYTES);
+			writeBytes ((byte[]) o);
+			}
+		else throw new IOException ("Values of " + o.getClass().getName() + " cannot be cached");
+		}
+
+	/**
+	 * Write a length-prefixed byte array, the length as a variable-length
+	 * integer of seven bits a byte.
+	 */
+
+	protected void writeBytes (byte[] b) throws IOException {
+		int n = b.length;
+		while (n >= 0x80) {
+			out.write ((n & 0x7f) | 0x80);
+			n >>>= 7;
+			}
+		out.write (n);
+		out.write (b);
+		}
+
+	/**
+	 * Get the number of rows written.
+	 * @return Rows
+	 */
+
+	public long getRows() {
+		return rows;
+		}
+
+	/**
+	 * Complete the cache at the end of the load, replacing any previous
+	 * cache file.
+	 * @throws IOException
+	 */
+
+	public void finish() throws IOException {
+		out.write (END);
+		out.writeLong (rows);
+		out.close();
+		out = null;
+		Files.move (tmp,path,StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+		finished = true;
+		}
+
+	/**
+	 * Close the writer, discarding the rows unless finish() was called.
+	 */
+
+	@Override
+	public void close() {
+		if (finished) return;
+		try {
+			if (out != null) out.close();
+			}
+		catch (IOException e) {
+			}
+		out = null;
+		try {
+			Files.deleteIfExists (tmp);
+			}
+		catch (IOException e) {
+			}
+		}
+
+	}
@@ -0,0 +1,80 @@
+package SQLServerBulkRecordDelimited;
+
+/**
+ * Reusable view of a range of a char array, returned by
+ * BufferedReaderDelimited.readRow() in place of a new String for each row.
+ * The view is reset by each read, so its characters are only valid until
+ * the next one. subSequence() and toString() copy the characters into a
+ * new String, which can be kept.
+ */
+
+public class RowView implements CharSequence {
+
+	protected char[] array;
+	protected int offset;
+	protected int length;
+
+	/**
+	 * Point the view at a range of characters.
+	 * @param array		Characters
+	 * @param offset	Index of the first character
+	 * @param length	Number of characters
+	 * @return this
+	 */
+
+	public RowView set (char[] array,int offset,int length) {
+		this.array = array;
+		this.offset = offset;
+		this.length = length;
+		return this;
+		}
+
+	/**
+	 * @return Array holding the characters, from offset() for length()
+	 */
+
+	public char[] array() {
+		return array;
+		}
+
+	/**
+	 * @return Index in array() of the first character
+	 */
+
+	public int offset() {
+		return offset;
+		}
+
+	@Override
+	public int length() {
+		return length;
+		}
+
+	@Override
+	public char charAt (int index) {
+		return array[offset + index];
+		}
+
+	/**
+	 * Copy a range of characters to an array.
+	 * @param start	Index of the first character
+	 * @param end	Index one past the last character
+	 * @param dst	Destination
+	 * @param at	Index in dst of the first character copied
+	 */
+
+	public void getChars (int start,int end,char[] dst,int at) {
+		System.arraycopy (array,offset + start,dst,at,end - start);
+		}
+
+	@Override
+	public String subSequence (int start,int end) {
+		return new String (array,offset + start,end - start);
+		}
+
+	@Override
+	public String toString() {
+		return new String (array,offset,length);
+		}
+
+	}
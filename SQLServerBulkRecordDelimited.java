@@ -1,19 +1,33 @@
 
 package SQLServerBulkRecordDelimited;
 
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.InputStreamReader;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import java.sql.Types;
+import javax.management.ObjectName;
 import com.microsoft.sqlserver.jdbc.*;
-import java.text.SimpleDateFormat;
-import java.time.ZoneId;
 
 public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.lang.AutoCloseable {
     
@@ -26,19 +40,50 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
         Integer type;
         Integer precision;
         Integer scale;
-        SimpleDateFormat format = null;
+        TemporalParser format = null;
+        ColumnConverter custom = null;
+        StringCache cache = null;
+        ColumnConverter converter;
+        BoxCache boxes = null;
+        boolean skipped = false;
 
-        Column(String name,Integer type,Integer precision,Integer scale,SimpleDateFormat format) {
+		// Character position, length and padding of a fixed-width field,
+		// position -1 for a delimited field
+		int position = -1;
+		int length = 0;
+		FieldTrim trim = null;
+
+        Column(String name,Integer type,Integer precision,Integer scale,TemporalParser format,ColumnConverter custom,StringCache cache) {
             this.name = name;
             this.type = type;
             this.precision = precision;
             this.scale = scale;
             this.format = format;
+            this.custom = custom;
+            this.cache = cache;
+			compile (nullText);
+			}
+
+		// Field in the file that is scanned past but not loaded
+		Column(String name) {
+			this.name = name;
+			this.skipped = true;
+			}
+
+		// Decide null handling and type conversion once for the column.
+		final void compile(String nullText) {
+			boxes = (shareBoxes && !skipped) ? new BoxCache (1024) : null;
+			if (skipped) converter = null;
+			else if (custom == null) converter = ColumnConverters.forType (type,scale,format,nullText,cache,boxes);
+			else converter = ColumnConverters.nullable (type,nullText,custom);
 			}
 		}
 	
 	protected List<Column> columns = new ArrayList<>();
 
+	// Positions in the file of the loaded columns, built on first use
+	protected int[] loaded = null;
+
 	//--------------------------------------------------------------------------
 	//	File properties
 	//--------------------------------------------------------------------------
@@ -50,6 +95,20 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 	protected String colDelimiter = ",";
 	protected String encoding = "UTF-8";
 	protected String nullText = null;
+	protected char quote = 0;
+	protected int recordLength = 0;
+	
+	// Files read in turn, when fileName names a directory or glob or
+	// fileNames() lists several. Each file is read by a copy of this record,
+	// and the next one is opened in the background while the current one
+	// drains. Copies name their file in error messages.
+	protected List<String> fileNames = null;
+	protected List<String> files = null;
+	protected int fileIndex = 0;
+	protected SQLServerBulkRecordDelimited fileRecord = null;
+	protected Future<SQLServerBulkRecordDelimited> nextFileRecord = null;
+	protected ExecutorService fileOpener = null;
+	protected boolean nameFile = false;
 	
 	// Default format strings for dates and times.
 	protected String defaultFormatDate = "y-M-d";
@@ -60,13 +119,103 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 	// File interface
     protected BufferedReaderDelimited reader;
 	protected int readerBufferSize = 4096;
-    protected InputStreamReader isr;
+	protected ReadMode readMode = ReadMode.STREAM;
+    protected Reader isr;
     protected FileInputStream fis;
 	
-	// Row retrieved from file
-	protected String row;
+	// Decompressed input, for gzip and zlib files
+	protected InputStream inflater;
+	protected int decompressThreads = Runtime.getRuntime().availableProcessors();
+	
+	// Row retrieved from file, a view of the read buffer valid until the
+	// next row is read
+	protected CharSequence row;
 	protected Integer rowCount = 0;
 	
+	// Byte offset of the current row and of the row after it, -1 if not known
+	protected long rowOffset = -1;
+	protected long rowEnd = -1;
+	
+	// Checkpoints every checkpointRows rows sent, and rows read before
+	// the point a resumed load started from
+	protected int checkpointRows = 0;
+	protected CheckpointListener checkpointListener = null;
+	protected long delivered = 0;
+	protected long rowsBefore = 0;
+	
+	// Rows that fail to convert, see rejects(). Rows are converted by
+	// next() when a reject file is set.
+	protected String rejectFile = null;
+	protected long maxRejects = 0;
+	protected double maxRejectPercent = 100;
+	protected RejectLog rejects = null;
+	protected boolean ownsRejects = false;
+	protected Object[] converted = null;
+	protected String errorColumn = null;
+	protected String errorReason = null;
+	
+	// Binary cache of the converted rows, see cache(). Rows are replayed
+	// from the cache while it is current, and written to it otherwise, with
+	// the delivered row last written. The key stands for custom converters.
+	protected String cacheFile = null;
+	protected String cacheKey = null;
+	protected CachedBulkRecord cacheRecord = null;
+	protected RowCacheWriter cacheWriter = null;
+	protected long cachedRow = 0;
+	
+	// Load metrics, see metrics(). Copies share the counters, but only the
+	// record the driver reads from times next() and getRowData().
+	protected boolean metricsEnabled = false;
+	protected int metricsSampleInterval = 0;
+	protected LoadMetrics metrics = null;
+	protected boolean timed = false;
+	protected long lastReturn = 0;
+	protected long sampleCount = 0;
+	protected LoadMetricsListener metricsListener = null;
+	protected long metricsIntervalNanos = 0;
+	protected long lastReport = 0;
+	protected String metricsMBean = null;
+	protected ObjectName mbeanName = null;
+	
+	// Reuse of the row array, and shared boxes for values, see reuseRows().
+	// Copies share boxes, but only a record whose rows go straight to the
+	// driver reuses its array.
+	protected boolean reuseRows = false;
+	protected boolean shareBoxes = false;
+	protected Object[] rowBuffer = null;
+	
+	// Key columns checked for ascending order as rows are sent, see
+	// sortedBy(), and the delivered row last checked
+	protected String[] sortColumns = null;
+	protected SortCheck sortCheck = null;
+	protected long sortedRow = 0;
+	
+	// Columnar parsing, see columnar(). Rows are parsed a block at a time
+	// into batch, and next() steps through it. Rows read up to the end of
+	// the block are counted in linesRead, and a conversion error found in
+	// the block is raised by getRowData() through rowError.
+	protected int batchRows = 0;
+	protected ColumnBatch batch = null;
+	protected int batchIndex = -1;
+	protected boolean batchEnded = false;
+	protected int linesRead = 0;
+	protected SQLServerException rowError = null;
+	
+	// Column splitter, reused for every row
+	protected ColumnTokenizer tokenizer;
+	
+	// Byte range of the file to be loaded, and number of rows before it.
+	// A negative rowBase is counted on demand for error messages.
+	protected long rangeStart = 0;
+	protected long rangeEnd = Long.MAX_VALUE;
+	protected long rowBase = 0;
+	
+	// Parallel parsing
+	protected int parallelThreads = 1;
+	protected boolean parallelOrdered = true;
+	protected int pipelineDepth = 0;
+	protected ParallelRowReader parallelReader;
+	
 	//--------------------------------------------------------------------------
 	//	Fluent interface to set properties
 	//--------------------------------------------------------------------------
@@ -82,6 +231,75 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 		return this;
 		}
 	
+	/**
+	 * Keep the converted rows in a binary cache file, so that loading the
+	 * same file again, for example into another database, skips parsing.
+	 * The first load writes the cache as rows are sent, and the file is
+	 * completed when the last row has been read. Later loads replay the
+	 * cache while the source files keep their size and modification time
+	 * and the columns and the settings that affect the values, see
+	 * cacheSettings(), are unchanged, and otherwise write it again. Not used
+	 * with range(), resumeFrom() or checkpoint(). Columns with a custom
+	 * converter need cache(fileName,key).
+	 * @param fileName	Cache file
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited cache (String fileName) {
+		return cache (fileName,null);
+		}
+	
+	/**
+	 * Keep the converted rows in a binary cache file, with a key for the
+	 * custom converters of the columns. The code of a converter cannot be
+	 * compared, so the cache is only replayed while the key is unchanged:
+	 * give a new key whenever a converter would return different values.
+	 * @param fileName	Cache file
+	 * @param key		Version of the custom converters
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited cache (String fileName,String key) {
+		this.cacheFile = fileName;
+		this.cacheKey = key;
+		return this;
+		}
+	
+	/**
+	 * Report a checkpoint every batchSize rows, from which a failed load can
+	 * be resumed with resumeFrom(). Use the batch size given to
+	 * SQLServerBulkCopyOptions.setBatchSize(). The listener is called when
+	 * the driver asks for the first row of a batch, once the rows before it
+	 * have been sent, and with UseInternalTransaction committed. Needs byte
+	 * offsets, so the file is read as in CHANNEL mode if the read mode is
+	 * STREAM, and the encoding must be ASCII-compatible. Not supported with
+	 * unordered parallel().
+	 * @param batchSize	Rows between checkpoints
+	 * @param listener	Receiver of checkpoints
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited checkpoint (int batchSize,CheckpointListener listener) {
+		this.checkpointRows = batchSize;
+		this.checkpointListener = listener;
+		return this;
+		}
+	
+	/**
+	 * Parse rows a block at a time into a ColumnBatch, with integer,
+	 * floating point and character columns held in primitive arrays rather
+	 * than an object per value. next() and getRowData() step through the
+	 * block, and nextBatch() returns whole blocks. Values are boxed only
+	 * when getRowData() is called.
+	 * @param batchRows	Rows per block
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited columnar (int batchRows) {
+		this.batchRows = batchRows;
+		return this;
+		}
+	
 	/**
 	 * Specify the column delimiter to be used when parsing an input line.
 	 * @param delimiter String containing one or more characters
@@ -106,10 +324,54 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 	 */
 	
 	public SQLServerBulkRecordDelimited column (String name,int type,int precision,int scale,String format) throws Exception {
+		return addColumn (name,type,precision,scale,format,null);
+		}
+	
+	/**
+	 * Add a column definition with just name, type and a custom converter,
+	 * the same as column(name,type).converter(converter).
+	 * @param name			Name of column in target database
+	 * @param type			java.sql.Types data type
+	 * @param converter		Converter from column text to the value sent
+	 * @return	this
+	 * @throws Exception 
+	 */
+	
+	public SQLServerBulkRecordDelimited column (String name,int type,ColumnConverter converter) throws Exception {
+		return column (name,type).converter (converter);
+		}
+	
+	/**
+	 * Give the most recently defined column a custom converter, for example
+	 * ColumnConverters.hexBinary() to send VARBINARY values as byte[]. The
+	 * converter is called with non-null values only, after the standard
+	 * null handling for the column type. Precision and scale are those
+	 * given to column().
+	 * @param converter		Converter from column text to the value sent
+	 * @return this
+	 * @throws Exception 
+	 */
+	
+	public SQLServerBulkRecordDelimited converter (ColumnConverter converter) throws Exception {
+		if (converter == null) throw new Exception ("converter = null");
+		if (columns.isEmpty()) throw new Exception ("converter() must follow column()");
+		Column col = columns.get (columns.size() - 1);
+		if (col.skipped) throw new Exception ("converter() must follow column()");
+		if (col.cache != null) throw new Exception (col.name + " is interned, converter() must come before intern()");
+		col.custom = converter;
+		col.compile (this.nullText);
+		return this;
+		}
+	
+	/**
+	 * Add a column definition and create its converter.
+	 */
+	
+	protected SQLServerBulkRecordDelimited addColumn (String name,int type,int precision,int scale,String format,ColumnConverter custom) throws Exception {
 		
 		if (name == null) throw new Exception ("name = null");
-		for (Column col: columns) if (col.name.equalsIgnoreCase(name)) throw new Exception (name + " already defined");
-		SimpleDateFormat sdf = null;
+		for (Column col: columns) if (name.equalsIgnoreCase(col.name)) throw new Exception (name + " already defined");
+		TemporalParser parser = null;
 		
 		// Override requested column properties if required by data type.
         switch (type) {
@@ -126,7 +388,7 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 				else if (type == Types.TIME && format == null) format = defaultFormatTime;
 				else if (type == Types.TIMESTAMP && format == null) format = defaultFormatTimestamp;
 				else if (type == Types.TIMESTAMP_WITH_TIMEZONE && format == null) format = defaultFormatTimestampWithTimezone;
-				if (format != null) sdf = new SimpleDateFormat (format);
+				if (format != null) parser = new TemporalParser (format,type);
 
 				break;
 
@@ -147,8 +409,9 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 				
 			}	
 		
-		Column col = new Column (name,type,precision,scale,sdf);
+		Column col = new Column (name,type,precision,scale,parser,custom,null);
 		columns.add (col);
+		loaded = null;
 		
 		return this;
 		}
@@ -194,6 +457,20 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 		return column (name,type,0,0,format);
 		}
 	
+	/**
+	 * Set the number of threads inflating a compressed file. Gzip files with
+	 * several members, as written by pigz --independent or by concatenating
+	 * gzip files, are inflated a member per thread. Default is the number of
+	 * processors.
+	 * @param threads	Number of threads
+	 * @return this
+	 */
+	
+	public SQLServerBulkRecordDelimited decompressThreads (int threads) {
+		this.decompressThreads = threads;
+		return this;
+		}
+	
 	/**
 	 * Set the encoding of the input file. Defaults to UTF-8.
 	 * @param encoding
@@ -206,20 +483,40 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 		}
 	
 	/**
-	 * Set path name of file to be loaded.
+	 * Set path name of file to be loaded. A directory loads every file in
+	 * it, and a name whose last part holds *, ?, [ or { loads the files
+	 * matching it as a glob, in order of name. Rows run on from one file to
+	 * the next as a single load.
 	 * @param fileName
 	 * @return this
 	 */
 
 	public SQLServerBulkRecordDelimited fileName (String fileName) {
 		this.fileName = fileName;
+		this.fileNames = null;
+		this.files = null;
+		return this;
+		}
+	
+	/**
+	 * Load several files in turn as one load. Each name may be a file,
+	 * directory or glob as for fileName(). Header lines are skipped in
+	 * every file, and error messages name the file and the row within it.
+	 * Not supported with parallel(), range() or checkpoint().
+	 * @param fileNames	Files in the order to be loaded
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited fileNames (String... fileNames) {
+		this.fileNames = Arrays.asList (fileNames);
+		this.files = null;
 		return this;
 		}
 	
 	/**
 	 * Set the format of Dates. Default is y-M-d. May be overridden by the
 	 * column definition. Target database type should be DATE.
-	 * @param format	SimpleDateFormat format string.
+	 * @param format	DateTimeFormatter pattern.
 	 * @return this
 	 */
 	
@@ -231,12 +528,12 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 	/**
 	 * Set the format of Times. Default is H:m:s. May be overridden by the
 	 * column definition. Target database type should be TIME.
-	 * @param format	SimpleDateFormat format string.
+	 * @param format	DateTimeFormatter pattern.
 	 * @return this
 	 */
 	
 	public SQLServerBulkRecordDelimited formatTime(String format) {
-		this.defaultFormatDate = format;
+		this.defaultFormatTime = format;
 		return this;
 		}
 	
@@ -244,7 +541,7 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 	 * Set the format of Timestamps. Default is y-M-d H:m:s. May be
 	 * overridden by the column definition. Target database type should be 
 	 * DATETIME or DATETIME2.
-	 * @param format	SimpleDateFormat format string
+	 * @param format	DateTimeFormatter pattern.
 	 * @return this
 	 */
 	
@@ -257,339 +554,1851 @@ public class SQLServerBulkRecordDelimited implements ISQLServerBulkRecord, java.
 	 * Set the format of Timestamps with Timezones. Default is y-M-d H:m:s X. May be
 	 * overridden by the column definition. Target database type should be 
 	 * DATETIMEOFFSET, and values will be stored in GMT.
-	 * @param format	SimpleDateFormat format string
+	 * @param format	DateTimeFormatter pattern.
 	 * @return this
 	 */
 	
 	public SQLServerBulkRecordDelimited formatTimestampWithTimezone (String format) {
-		this.defaultFormatTimestamp = format;
+		this.defaultFormatTimestampWithTimezone = format;
 		return this;
 		}
 	
 	/**
-	 * Set the value that will differentiate NULL from an empty string
-	 * in character fields. If this property is not specified, any empty
-	 * value will be loaded as NULL.
-	 * @param text NULL column value, defaults to NULL
+	 * Leave a defined column out of the load. The field is still expected
+	 * in the file but is not converted or reported to SQLServerBulkCopy.
+	 * @param name	Column name
 	 * @return this
+	 * @throws Exception 
 	 */
 	
-	public SQLServerBulkRecordDelimited nullText (String text) {
-		this.nullText = text;
-		return this;
+	public SQLServerBulkRecordDelimited ignore (String name) throws Exception {
+		for (Column col: columns) {
+			if (!col.skipped && col.name.equalsIgnoreCase (name)) {
+				col.skipped = true;
+				col.compile (this.nullText);
+				loaded = null;
+				return this;
+				}
+			}
+		throw new Exception ("No column " + name);
 		}
 	
 	/**
-	 * Open the file for loading.
+	 * Share the Strings created for the most recently defined column through
+	 * a bounded cache. Repeated values such as status or currency codes are
+	 * then returned as one String each, rather than a new String per row.
+	 * Only applies to character columns.
+	 * @param maxEntries	Number of distinct values to keep
 	 * @return this
-	 * @throws SQLServerException 
+	 * @throws Exception 
 	 */
 	
-	public SQLServerBulkRecordDelimited open() throws SQLServerException {
-		
-		try {
-			// Open the input file as a reader
-			this.fis = new FileInputStream (fileName);
-			this.isr = new InputStreamReader (fis,encoding);
-			this.reader = new BufferedReaderDelimited (isr,this.readerBufferSize);
-			this.reader.setDelimiter (this.rowDelimiter);
-			}
-		catch (Exception ex) {
-			throw new SQLServerException (ex.getMessage(),null,0,ex);
-			}
-
-		// Skip header lines
-		for (int i=0; i<this.skipLines; ++i) next();
-		
+	public SQLServerBulkRecordDelimited intern (int maxEntries) throws Exception {
+		if (columns.isEmpty()) throw new Exception ("intern() must follow column()");
+		Column col = columns.get (columns.size() - 1);
+		if (col.skipped || !isCharacter (col.type) || col.custom != null) throw new Exception (col.name + " is not a character column");
+		col.cache = new StringCache (maxEntries);
+		col.compile (this.nullText);
 		return this;
 		}
-
+	
 	/**
-	 * Specify the row delimiter to be used when parsing the input file.
-	 * @param delimiter String containing one or more characters
+	 * Collect load metrics: rows and bytes per second, time spent in next(),
+	 * in getRowData() and in the driver between calls, time waiting for the
+	 * file, and nulls per column. See getMetrics().
 	 * @return this
 	 */
 	
-	public SQLServerBulkRecordDelimited rowDelimiter (String delimiter) {
-		this.rowDelimiter = delimiter.toCharArray();
-		this.rowDelimiterLength = rowDelimiter.length;
-		return this;
+	public SQLServerBulkRecordDelimited metrics() {
+		return metrics (0);
 		}
 	
 	/**
-	 * Specify the row delimiter to be used when parsing the input file.
-	 * @param delimiter Array of one or more characters
+	 * Collect load metrics, and also time the conversion of each column on
+	 * one row in sampleInterval.
+	 * @param sampleInterval	Rows between conversion timings, 0 for none
 	 * @return this
 	 */
 	
-	public SQLServerBulkRecordDelimited rowDelimiter (char[] delimiter) {
-		this.rowDelimiter = delimiter;
-		this.rowDelimiterLength = rowDelimiter.length;
+	public SQLServerBulkRecordDelimited metrics (int sampleInterval) {
+		this.metricsEnabled = true;
+		this.metricsSampleInterval = sampleInterval;
 		return this;
 		}
 	
 	/**
-	 * Set the number of lines to skip at the beginning of a file. Used to
-	 * bypass column headers.
-	 * @param skipLines 
+	 * Collect load metrics and pass them to a listener at an interval, and
+	 * once more when the record is closed.
+	 * @param listener			Receiver of metrics
+	 * @param intervalMillis	Time between reports
 	 * @return this
 	 */
-
-	public SQLServerBulkRecordDelimited skipLines (Integer skipLines) {
-		this.skipLines = skipLines;
+	
+	public SQLServerBulkRecordDelimited metricsListener (LoadMetricsListener listener,long intervalMillis) {
+		this.metricsEnabled = true;
+		this.metricsListener = listener;
+		this.metricsIntervalNanos = intervalMillis * 1000000;
 		return this;
 		}
 	
-	//--------------------------------------------------------------------------
-	//	ISQLServerBulkRecord Interface Implementation
-	//--------------------------------------------------------------------------
-	
-    /**
-     * Release any resources associated with the file reader.
-     * @throws SQLServerException
-     */
-	 
-	@Override
-    public void close() throws SQLServerException {
- 
-        // Ignore errors since we are only cleaning up here
-        if (reader != null)
-            try {
-                reader.close();
-				reader = null;
-            	}
-            catch (Exception e) {
-            	}
-        if (isr != null)
-            try {
-                isr.close();
-				isr = null;
-            	}
-            catch (Exception e) {
-            	}
-        if (fis != null)
-            try {
-                fis.close();
-				fis = null;
-            	}
-            catch (Exception e) {
-            	}
-
-     	}
-	
 	/**
-	 * Get the set of column identifiers.
-	 * @return set	Set of integer identifiers.
+	 * Collect load metrics and register them as a JMX MBean named
+	 * SQLServerBulkRecordDelimited:type=LoadMetrics,name="name" from open()
+	 * until close().
+	 * @param name	Name of the load
+	 * @return this
 	 */
-
-    @Override
-    public Set<Integer> getColumnOrdinals() {
-		Set<Integer> set = new HashSet<>();
-		for (int i=0; i<columns.size(); ++i) set.add (i+1);
-        return set;
-		}
 	
-	/**
-	 * Get the name of a column.
-	 * @param column Base-1 number of column
-	 * @return 
-	 */
-
-    @Override
-    public String getColumnName(int column) {
-        return columns.get(column-1).name;
+	public SQLServerBulkRecordDelimited metricsMBean (String name) {
+		this.metricsEnabled = true;
+		this.metricsMBean = name;
+		return this;
 		}
 	
 	/**
-	 * Get the data type for a column
-	 * @param column Base-1 number of column
-	 * @return java.sql.Type value
+	 * Set the value that will differentiate NULL from an empty string
+	 * in character fields. If this property is not specified, any empty
+	 * value will be loaded as NULL.
+	 * @param text NULL column value, defaults to NULL
+	 * @return this
 	 */
-
-    @Override
-    public int getColumnType(int column) {
-        return columns.get(column-1).type;
-		}
 	
-	/**
-	 * Get column precision.
-	 * @param column
-	 * @return 
-	 */
-
-    @Override
-    public int getPrecision(int column) {
-        return columns.get(column-1).precision;
+	public SQLServerBulkRecordDelimited nullText (String text) {
+		this.nullText = text;
+		for (Column col: columns) col.compile (text);
+		return this;
 		}
 	
 	/**
-	 * Get column scale.
-	 * @param column
-	 * @return 
+	 * Open the file for loading.
+	 * @return this
+	 * @throws SQLServerException 
 	 */
-
-    @Override
-    public int getScale(int column) {
-       return columns.get(column-1).scale;
-		}
 	
-	/**
-	 * Auto-Increment values are not supported for delimited files.
-	 * @param column IGNORE
-	 * @return IGNORE
-	 */
-
-    @Override
-    public boolean isAutoIncrement(int column) {
-        return false;
+	public SQLServerBulkRecordDelimited open() throws SQLServerException {
+		
+		// Metrics and the reject file are shared by any copies made for
+		// other threads
+		if (this.metricsEnabled && this.metrics == null) openMetrics();
+		if (this.sortColumns != null) this.sortCheck = new SortCheck (this.sortColumns,sortKeys());
+		
+		try {
+			this.files = resolveFiles();
+			}
+		catch (Exception ex) {
+			throw new SQLServerException (ex.getMessage(),null,0,ex);
+			}
+		
+		// Replay a current cache in place of the file, or start a new one.
+		// A cache holds the whole load, so ranges are never cached, and a
+		// cache that cannot be written is left out rather than failing the
+		// load.
+		if (this.cacheFile != null && this.cacheKey == null) {
+			for (Column col: columns) {
+				if (!col.skipped && col.custom != null && !isBuiltIn (col.custom)) throw new SQLServerException ("File=" + this.cacheFile + ", Err=Column " + col.name + " has a custom converter, give cache() a key for it",null,0,null);
+				}
+			}
+		if (this.cacheFile != null && this.rangeStart == 0 && this.rangeEnd == Long.MAX_VALUE && this.checkpointRows == 0) {
+			if (openCache()) return this;
+			try {
+				this.cacheWriter = new RowCacheWriter (this.cacheFile,this.files,this,cacheSettings());
+				}
+			catch (Exception ex) {
+				this.cacheWriter = null;
+				}
+			}
+		
+		try {
+			return openInput();
+			}
+		catch (SQLServerException ex) {
+			if (this.cacheWriter != null) this.cacheWriter.close();
+			this.cacheWriter = null;
+			throw ex;
+			}
 		}
-	
+
 	/**
-	 * Get array of objects representing data sent to SQL Server in specified type.
-	 * @return Array of objects
+	 * Open the file, or files, for reading rows.
+	 * @return this
 	 * @throws SQLServerException 
 	 */
 
-    @Override
-    public Object[] getRowData() throws SQLServerException {
-        
-		if (row == null) return null;
-
-		// Split the row into value strings
-		String[] values = this.row.split(colDelimiter, -1);
-		if (values.length != columns.size()) {
-			String msg = MessageFormat.format("Row={0}, Err={1} values, {2} expected.",rowCount,values.length,columns.size());
-			throw new SQLServerException (msg,null,0,null);
-			}
+	protected SQLServerBulkRecordDelimited openInput() throws SQLServerException {
+		
+		if (this.rejectFile != null && this.rejects == null) {
+			try {
+				this.rejects = newRejectLog();
+				this.ownsRejects = true;
+				}
+			catch (Exception ex) {
+				throw new SQLServerException (ex.getMessage(),null,0,ex);
+				}
+			}
+		
+		// Several files are read a file at a time, by copies of this record
+		if (this.files.size() > 1) {
+			if (this.parallelThreads > 1) throw new SQLServerException ("File=" + sourceName() + ", Err=Several files cannot be split for parallel(), use pipeline()",null,0,null);
+			if (this.checkpointRows > 0 || this.rangeStart > 0 || this.rangeEnd != Long.MAX_VALUE) throw new SQLServerException ("File=" + sourceName() + ", Err=Checkpoints and byte ranges need a single file",null,0,null);
+			if (this.pipelineDepth == 0) return openFiles();
+			}
+		else this.fileName = this.files.get (0);
+		
+		if (this.parallelThreads > 1) return openParallel();
+		if (this.pipelineDepth > 0) {
+			this.rowCount = (this.rangeStart == 0) ? this.skipLines : 0;
+			this.parallelReader = new ParallelRowReader (this,this.pipelineDepth);
+			return this;
+			}
+		boolean ranged = (this.rangeStart > 0 || this.rangeEnd != Long.MAX_VALUE);
+		boolean stream = (this.readMode == ReadMode.STREAM && this.checkpointRows == 0);
+		
+		try {
+			// Open the input file as a reader. A byte range or checkpoints
+			// need a channel. Compressed input is read sequentially through
+			// the inflater, and can only be started part way by discarding
+			// the data before the start.
+			this.fis = new FileInputStream (fileName);
+			this.inflater = openCompressed (fis.getChannel());
+			if (this.inflater != null) {
+				if (this.rangeEnd != Long.MAX_VALUE) throw new SQLServerException ("File=" + fileName + ", Err=A byte range cannot be loaded from a compressed file",null,0,null);
+				for (long n=this.rangeStart; n>0; ) {
+					long skipped = inflater.skip (n);
+					if (skipped <= 0) break;
+					n -= skipped;
+					}
+				if (stream) {
+					this.isr = new DecodingReader (inflater,Charset.forName(encoding));
+					this.reader = new BufferedReaderDelimited (isr,this.readerBufferSize);
+					}
+				else {
+					this.reader = new BufferedReaderDelimited (Channels.newChannel (inflater),Charset.forName(encoding),this.readerBufferSize,this.rangeStart);
+					}
+				}
+			else if (stream && !ranged) {
+				this.isr = new DecodingReader (fis,Charset.forName(encoding));
+				this.reader = new BufferedReaderDelimited (isr,this.readerBufferSize);
+				}
+			else {
+				this.reader = new BufferedReaderDelimited (fis.getChannel(),Charset.forName(encoding),this.readerBufferSize,this.readMode == ReadMode.MAPPED,this.rangeStart,this.rangeEnd);
+				}
+			this.reader.setDelimiter (this.rowDelimiter);
+			this.reader.setRecordLength (this.recordLength);
+			this.reader.setMetrics (this.metrics);
+			if (this.checkpointRows > 0 && !this.reader.hasOffsets()) throw new SQLServerException ("File=" + fileName + ", Err=Checkpoints need an ASCII-compatible encoding and row delimiter",null,0,null);
+			this.tokenizer = newTokenizer();
+			}
+		catch (SQLServerException ex) {
+			throw ex;
+			}
+		catch (Exception ex) {
+			throw new SQLServerException (ex.getMessage(),null,0,ex);
+			}
+
+		// Skip a byte order mark and header lines, which are only present at
+		// the start of the file. Rows before the start of compressed data
+		// cannot be counted.
+		this.rowBase = (this.rangeStart == 0) ? 0 : (this.inflater != null) ? this.rowsBefore : -1;
+		if (this.rangeStart == 0) {
+			try {
+				this.reader.skipBom();
+				}
+			catch (Exception ex) {
+				throw new SQLServerException ("File=" + fileName + ", Err=" + ex.getMessage(),null,0,ex);
+				}
+			for (int i=0; i<this.skipLines; ++i) readRow();
+			}
+		
+		return this;
+		}
+
+	/**
+	 * Open the cache file for replay if it holds the rows of this load.
+	 * @return true if rows are replayed from the cache
+	 */
+
+	protected boolean openCache() {
+		if (!new File (this.cacheFile).isFile()) return false;
+		CachedBulkRecord c = new CachedBulkRecord (this.cacheFile);
+		try {
+			c.open();
+			}
+		catch (SQLServerException ex) {
+			return false;
+			}
+		if (!c.matches (this.files,this,cacheSettings())) {
+			c.close();
+			return false;
+			}
+		this.cacheRecord = c;
+		return true;
+		}
+
+	/**
+	 * Describe the settings that decide the values of a cached load beyond
+	 * the source files and the column types: how the text is read and split,
+	 * and how each column is converted. A custom converter is known by its
+	 * class, or for a lambda by the class declaring it, and by the key given
+	 * to cache(), which stands for what the class cannot tell apart.
+	 * @return Settings, compared as a whole
+	 */
+
+	protected String cacheSettings() {
+		StringBuilder sb = new StringBuilder();
+		sb.append ("encoding=").append (encoding)
+			.append ("|colDelimiter=").append (colDelimiter)
+			.append ("|rowDelimiter=").append (rowDelimiter)
+			.append ("|quote=").append ((int) quote)
+			.append ("|nullText=").append (nullText)
+			.append ("|skipLines=").append (skipLines)
+			.append ("|range=").append (rangeStart).append ('-').append (rangeEnd)
+			.append ("|recordLength=").append (recordLength)
+			.append ("|rejects=").append (rejectFile != null)
+			.append ("|zone=").append (java.time.ZoneId.systemDefault())
+			.append ("|key=").append (cacheKey);
+		for (Column col: columns) {
+			sb.append ("|column=").append (col.name);
+			if (col.skipped) {
+				sb.append (",skipped");
+				continue;
+				}
+			sb.append (',').append (col.type).append (',').append (col.precision).append (',').append (col.scale)
+				.append (",format=").append (col.format)
+				.append (",position=").append (col.position).append (',').append (col.length).append (',').append (col.trim);
+			if (col.custom != null) {
+				String name = col.custom.getClass().getName();
+				int lambda = name.indexOf ("$$Lambda");
+				sb.append (",custom=").append ((lambda >= 0) ? name.substring (0,lambda) : name);
+				}
+			}
+		return sb.toString();
+		}
+
+	/**
+	 * Test whether a converter is one of ColumnConverters, which take no
+	 * arguments and so are known by their class.
+	 */
+
+	protected static boolean isBuiltIn (ColumnConverter converter) {
+		return converter.getClass().getName().startsWith (ColumnConverters.class.getName() + "$$Lambda");
+		}
+
+	/**
+	 * Pass a row sent to the driver to the cache, once however often the
+	 * driver asks for it. A row that cannot be cached drops the cache,
+	 * rather than failing the load.
+	 * @param o	Converted row
+	 * @return The row
+	 */
+
+	protected Object[] cacheRow (Object[] o) {
+		if (cacheWriter == null || o == null || cachedRow == delivered) return o;
+		cachedRow = delivered;
+		try {
+			cacheWriter.write (o);
+			}
+		catch (Exception ex) {
+			cacheWriter.close();
+			cacheWriter = null;
+			}
+		return o;
+		}
+
+	/**
+	 * Check the order of a row sent to the driver, once however often the
+	 * driver asks for it.
+	 * @param o	Converted row
+	 * @return The row
+	 */
+
+	protected Object[] checkSorted (Object[] o) {
+		if (sortCheck == null || o == null || sortedRow == delivered) return o;
+		sortedRow = delivered;
+		if (sortCheck.check (o)) {
+			if (fileRecord != null) sortCheck.violation (fileRecord.rowNumber(),fileRecord.fileName);
+			else sortCheck.violation (rowNumber(),null);
+			}
+		return o;
+		}
+
+	/**
+	 * Complete the cache once every row has been read.
+	 */
+
+	protected void finishCache() {
+		try {
+			cacheWriter.finish();
+			}
+		catch (Exception ex) {
+			cacheWriter.close();
+			}
+		cacheWriter = null;
+		}
+
+	/**
+	 * Expand the names given to fileName() or fileNames() into the files to
+	 * be loaded. A directory stands for the files in it, and a name whose
+	 * last part holds glob characters for the files matching it, each
+	 * sorted by name. Hidden files are left out.
+	 * @return Files in the order to be loaded
+	 * @throws java.io.IOException
+	 */
+
+	protected List<String> resolveFiles() throws java.io.IOException {
+		if (this.files != null) return this.files;
+		List<String> names = (this.fileNames != null) ? this.fileNames : Collections.singletonList (this.fileName);
+		List<String> list = new ArrayList<>();
+		for (String name: names) {
+			if (name == null) throw new java.io.IOException ("fileName = null");
+			File f = new File (name);
+			List<String> found = null;
+			if (f.isDirectory()) found = listFiles (f,"*");
+			else if (!f.exists() && isGlob (f.getName())) found = listFiles (f.getParentFile(),f.getName());
+			else list.add (name);
+			if (found != null && found.isEmpty()) throw new java.io.IOException ("No files match " + name);
+			if (found != null) list.addAll (found);
+			}
+		if (list.isEmpty()) throw new java.io.IOException ("No files to load");
+		return list;
+		}
+
+	/**
+	 * List the regular files in a directory that match a glob.
+	 * @param dir	Directory, null for the current directory
+	 * @param glob	Pattern for the file names
+	 * @return Paths sorted by name
+	 * @throws java.io.IOException
+	 */
+
+	protected static List<String> listFiles (File dir,String glob) throws java.io.IOException {
+		List<String> names = new ArrayList<>();
+		Path path = (dir == null) ? new File (".").toPath() : dir.toPath();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream (path,glob)) {
+			for (Path p: stream) {
+				String name = p.getFileName().toString();
+				if (!name.startsWith (".") && Files.isRegularFile (p)) names.add (name);
+				}
+			}
+		Collections.sort (names);
+		for (int i=0; i<names.size(); ++i) names.set (i,new File (dir,names.get (i)).getPath());
+		return names;
+		}
+
+	/**
+	 * Test whether a file name holds glob characters.
+	 */
+
+	protected static boolean isGlob (String name) {
+		for (char c: "*?[{".toCharArray()) if (name.indexOf (c) >= 0) return true;
+		return false;
+		}
+
+	/**
+	 * Name of the file, directory or glob to be loaded, for error messages.
+	 */
+
+	protected String sourceName() {
+		return (this.fileNames != null) ? String.join (",",this.fileNames) : this.fileName;
+		}
+
+	/**
+	 * Open the first of several files, and start opening the second in the
+	 * background. Rows are read from a copy of this record for each file.
+	 * @return this
+	 * @throws SQLServerException
+	 */
+
+	protected SQLServerBulkRecordDelimited openFiles() throws SQLServerException {
+		this.fileOpener = Executors.newSingleThreadExecutor (r -> {
+			Thread t = new Thread (r,"BulkRecordDelimited-open");
+			t.setDaemon (true);
+			return t;
+			});
+		this.rowCount = this.skipLines;
+		this.fileIndex = 0;
+		this.fileRecord = openFile (0);
+		this.nextFileRecord = openInBackground (1);
+		return this;
+		}
+
+	/**
+	 * Open one of the files with a copy of this record, which skips its
+	 * header lines and numbers its rows from the start of the file.
+	 * @param index	Base-0 file number
+	 * @return Open record for the file
+	 * @throws SQLServerException
+	 */
+
+	protected SQLServerBulkRecordDelimited openFile (int index) throws SQLServerException {
+		SQLServerBulkRecordDelimited c = copy();
+		c.fileName = this.files.get (index);
+		c.files = Collections.singletonList (c.fileName);
+		c.nameFile = true;
+		c.reuseRows = this.reuseRows;
+		try {
+			return c.open();
+			}
+		catch (SQLServerException ex) {
+			c.close();
+			throw ex;
+			}
+		}
+
+	/**
+	 * Open a file on the background thread and read its first block, so
+	 * that it is ready when the file before it ends.
+	 * @param index	Base-0 file number
+	 * @return Record for the file, or null if there are no more files
+	 */
+
+	protected Future<SQLServerBulkRecordDelimited> openInBackground (int index) {
+		if (index >= this.files.size()) return null;
+		return this.fileOpener.submit (() -> {
+			SQLServerBulkRecordDelimited c = openFile (index);
+			try {
+				c.reader.prefetch();
+				}
+			catch (Exception ex) {
+				c.close();
+				String msg = MessageFormat.format ("File={0}, Err={1}",c.fileName,ex.getMessage());
+				throw new SQLServerException (msg,null,0,ex);
+				}
+			return c;
+			});
+		}
+
+	/**
+	 * Close the current file and move to the next, waiting for it to open
+	 * if need be, and start opening the one after it.
+	 * @throws SQLServerException
+	 */
+
+	protected void nextFile() throws SQLServerException {
+
+		// Rows read from the file, less its header lines and the read
+		// that found the end of the file
+		this.rowCount += fileRecord.rowCount - this.skipLines - 1;
+		fileRecord.close();
+		if (++ fileIndex >= files.size()) return;
+
+		Future<SQLServerBulkRecordDelimited> f = nextFileRecord;
+		nextFileRecord = null;
+		try {
+			fileRecord = f.get();
+			}
+		catch (ExecutionException ex) {
+			if (ex.getCause() instanceof SQLServerException) throw (SQLServerException) ex.getCause();
+			String msg = MessageFormat.format ("File={0}, Err={1}",files.get (fileIndex),ex.getCause().getMessage());
+			throw new SQLServerException (msg,null,0,ex.getCause());
+			}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			String msg = MessageFormat.format ("File={0}, Err={1}",files.get (fileIndex),"Interrupted");
+			throw new SQLServerException (msg,null,0,ex);
+			}
+		nextFileRecord = openInBackground (fileIndex + 1);
+		}
+
+	/**
+	 * Create the column splitter. Rows are sliced by position when columns
+	 * have a position(), and otherwise split at the column delimiter.
+	 * @return Tokenizer for the columns
+	 * @throws SQLServerException
+	 */
+
+	protected ColumnTokenizer newTokenizer() throws SQLServerException {
+		boolean fixed = false;
+		for (Column col: columns) if (col.position >= 0) fixed = true;
+		if (!fixed) return (this.quote == 0) ? new ColumnTokenizer (this.colDelimiter,this.columns.size()) : new ColumnTokenizer (this.colDelimiter,this.columns.size(),this.quote);
+		if (this.quote != 0) throw new SQLServerException ("File=" + fileName + ", Err=Fixed-width fields cannot be quoted",null,0,null);
+
+		// Skipped fields are not read at all
+		int n = columns.size();
+		int[] starts = new int[n];
+		int[] lengths = new int[n];
+		FieldTrim[] trims = new FieldTrim[n];
+		for (int i=0; i<n; ++i) {
+			Column col = columns.get (i);
+			if (!col.skipped && col.position < 0) throw new SQLServerException ("File=" + fileName + ", Err=No position() for column " + col.name,null,0,null);
+			starts[i] = col.skipped ? -1 : col.position;
+			lengths[i] = col.length;
+			trims[i] = col.trim;
+			}
+		return new FixedWidthTokenizer (starts,lengths,trims);
+		}
+
+	/**
+	 * Create the metrics for this load, and register the MBean if wanted.
+	 * @throws SQLServerException 
+	 */
+
+	protected void openMetrics() throws SQLServerException {
+		int[] fields = loaded();
+		String[] names = new String[fields.length];
+		for (int k=0; k<fields.length; ++k) names[k] = columns.get(fields[k]).name;
+		this.metrics = new LoadMetrics (names,this.metricsSampleInterval);
+		this.timed = true;
+		this.lastReturn = 0;
+		this.lastReport = System.nanoTime();
+		if (this.metricsMBean != null) {
+			try {
+				this.mbeanName = new ObjectName ("SQLServerBulkRecordDelimited:type=LoadMetrics,name=" + ObjectName.quote (this.metricsMBean));
+				ManagementFactory.getPlatformMBeanServer().registerMBean (this.metrics,this.mbeanName);
+				}
+			catch (Exception ex) {
+				this.mbeanName = null;
+				throw new SQLServerException (ex.getMessage(),null,0,ex);
+				}
+			}
+		}
+
+	/**
+	 * Open the file for parallel parsing. The data after any header lines is
+	 * split into row-aligned chunks, each parsed by a copy of this record.
+	 * @return this
+	 * @throws SQLServerException 
+	 */
+
+	protected SQLServerBulkRecordDelimited openParallel() throws SQLServerException {
+
+		try {
+			this.fis = new FileInputStream (fileName);
+			FileChannel channel = fis.getChannel();
+			if (this.quote != 0) throw new SQLServerException ("File=" + fileName + ", Err=A file with quoted fields cannot be split for parallel(), use pipeline()",null,0,null);
+			if (this.recordLength > 0) throw new SQLServerException ("File=" + fileName + ", Err=A file of fixed-length records cannot be split for parallel(), use pipeline()",null,0,null);
+			if (isCompressed (channel)) throw new SQLServerException ("File=" + fileName + ", Err=A compressed file cannot be split for parallel(), use pipeline()",null,0,null);
+			if (this.checkpointRows > 0 && !this.parallelOrdered) throw new SQLServerException ("File=" + fileName + ", Err=Checkpoints need rows in file order",null,0,null);
+			RowAlignedSplitter splitter = new RowAlignedSplitter (channel,RowAlignedSplitter.delimiterBytes(this.rowDelimiter,Charset.forName(encoding)));
+			long end = Math.min (this.rangeEnd,channel.size());
+			int skip = (this.rangeStart == 0) ? this.skipLines : 0;
+			long start = splitter.skipRows (this.rangeStart,end,skip);
+			long[] bounds = splitter.split (start,end,this.parallelThreads * 4);
+			this.rowCount = skip;
+			this.parallelReader = new ParallelRowReader (this,bounds,this.parallelThreads,this.parallelOrdered);
+			}
+		catch (SQLServerException ex) {
+			throw ex;
+			}
+		catch (Exception ex) {
+			throw new SQLServerException (ex.getMessage(),null,0,ex);
+			}
+
+		return this;
+		}
+
+	/**
+	 * Test whether the file is compressed, by extension or by the gzip
+	 * magic number.
+	 * @param channel	Channel of the open file
+	 * @return true if the file is gzip or zlib compressed
+	 * @throws java.io.IOException
+	 */
+
+	protected boolean isCompressed (FileChannel channel) throws java.io.IOException {
+		return isCompressed (fileName,channel);
+		}
+
+	/**
+	 * Test whether a file is compressed, by extension or by the gzip magic
+	 * number.
+	 * @param fileName	Name of the file
+	 * @param channel	Channel of the open file
+	 * @return true if the file is gzip or zlib compressed
+	 * @throws java.io.IOException
+	 */
+
+	protected static boolean isCompressed (String fileName,FileChannel channel) throws java.io.IOException {
+		String name = fileName.toLowerCase();
+		return name.endsWith (".gz") || name.endsWith (".gzip") || name.endsWith (".zz") || ParallelGzipInputStream.isGzip (channel);
+		}
+
+	/**
+	 * Open an inflater over a compressed file. Gzip files are inflated in
+	 * parallel by ParallelGzipInputStream, zlib (.zz) files by a single
+	 * InflaterInputStream.
+	 * @param channel	Channel of the open file
+	 * @return Decompressed stream, or null if the file is not compressed
+	 * @throws java.io.IOException
+	 */
+
+	protected InputStream openCompressed (FileChannel channel) throws java.io.IOException {
+		if (!isCompressed (channel)) return null;
+		if (fileName.toLowerCase().endsWith (".zz")) return new InflaterInputStream (Channels.newInputStream (channel),new Inflater(),1 << 16);
+		return new ParallelGzipInputStream (channel,this.decompressThreads);
+		}
+
+	/**
+	 * Parse the file with several worker threads. Rows are converted by the
+	 * workers and handed back through next() in file order. Requires an
+	 * ASCII-compatible encoding and an ASCII row delimiter.
+	 * @param threads	Number of worker threads
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited parallel (int threads) {
+		return parallel (threads,true);
+		}
+
+	/**
+	 * Parse the file with several worker threads, optionally returning rows
+	 * in the order that chunks complete rather than file order.
+	 * @param threads	Number of worker threads
+	 * @param ordered	Return rows in file order
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited parallel (int threads,boolean ordered) {
+		this.parallelThreads = threads;
+		this.parallelOrdered = ordered;
+		return this;
+		}
+
+	/**
+	 * Read and convert rows on a background thread, up to a number of rows
+	 * ahead of the driver, so that parsing overlaps the bulk copy send.
+	 * Errors are raised by next() or getRowData() on the row where they
+	 * occurred. See getQueueStats() to size the buffer.
+	 * @param depth	Number of converted rows to buffer
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited pipeline (int depth) {
+		this.pipelineDepth = depth;
+		return this;
+		}
+
+	/**
+	 * Give the most recently defined column a fixed position in the row, in
+	 * place of splitting rows at the column delimiter. Once any column has a
+	 * position, every loaded column needs one, and rows are sliced by
+	 * position with no delimiter scan. Spaces are trimmed from the right of
+	 * character fields and from both sides of other fields.
+	 * @param start		Base-0 character position of the field
+	 * @param length	Length of the field in characters
+	 * @return this
+	 * @throws Exception 
+	 */
+
+	public SQLServerBulkRecordDelimited position (int start,int length) throws Exception {
+		return position (start,length,null);
+		}
+
+	/**
+	 * Give the most recently defined column a fixed position, and choose the
+	 * padding removed from it, such as FieldTrim.LEFT for right-aligned
+	 * numbers or FieldTrim.NONE to keep a field as it is.
+	 * @param start		Base-0 character position of the field
+	 * @param length	Length of the field in characters
+	 * @param trim		Padding to remove, null for the default
+	 * @return this
+	 * @throws Exception 
+	 */
+
+	public SQLServerBulkRecordDelimited position (int start,int length,FieldTrim trim) throws Exception {
+		if (columns.isEmpty()) throw new Exception ("position() must follow column()");
+		Column col = columns.get (columns.size() - 1);
+		if (col.skipped) throw new Exception ("position() must follow column()");
+		if (start < 0 || length < 1) throw new Exception (col.name + " position " + start + " length " + length + " is not valid");
+		col.position = start;
+		col.length = length;
+		col.trim = (trim != null) ? trim : isCharacter (col.type) ? FieldTrim.RIGHT : FieldTrim.BOTH;
+		if (col.precision == 0 && isCharacter (col.type)) col.precision = length;
+		return this;
+		}
+
+	/**
+	 * Allow fields to be quoted as in RFC 4180. A quoted field may contain
+	 * the column and row delimiters, and a doubled quote stands for one
+	 * quote. Rows without a quote character are split as before. Not
+	 * supported with parallel().
+	 * @param quote	Quote character, usually '"'
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited quote (char quote) {
+		this.quote = quote;
+		return this;
+		}
+
+	/**
+	 * Restrict loading to a byte range of the file. The range must start at
+	 * the beginning of a row, and rows are read until the end offset. Header
+	 * lines are only skipped for a range starting at zero. Ranges are read
+	 * with a FileChannel, so STREAM mode is treated as CHANNEL.
+	 * @param start	Offset of first byte
+	 * @param end	Offset one past the last byte
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited range (long start,long end) {
+		this.rangeStart = start;
+		this.rangeEnd = end;
+		return this;
+		}
+
+	/**
+	 * Select the input path. STREAM (the default) reads through a
+	 * DecodingReader. CHANNEL reads large direct buffers from a
+	 * FileChannel, and MAPPED memory-maps the file; both decode with a
+	 * reused CharsetDecoder. ISO-8859-1, UTF-8 and UTF-16LE have decode
+	 * paths of their own in every mode.
+	 * @param mode	Input path
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited readMode (ReadMode mode) {
+		this.readMode = mode;
+		return this;
+		}
+	
+	/**
+	 * Read records of a fixed length in place of rows ended by the row
+	 * delimiter, for files with no line ends. The length is in characters,
+	 * the same as a byte for single-byte encodings. Byte offsets are not
+	 * known, so checkpoints and parallel() are not supported.
+	 * @param length	Record length in characters
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited recordLength (int length) {
+		this.recordLength = length;
+		return this;
+		}
+	
+	/**
+	 * Write rows that fail to convert, or have the wrong number of fields,
+	 * to a reject file and carry on with the next row. The reason for each
+	 * reject is written to fileName.log with its line number and byte
+	 * offset. The load fails once more than maxRejects rows are rejected.
+	 * @param fileName		Reject file
+	 * @param maxRejects	Number of rejects allowed
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited rejects (String fileName,long maxRejects) {
+		return rejects (fileName,maxRejects,100);
+		}
+
+	/**
+	 * Write rows that fail to convert to a reject file, failing the load
+	 * once more than maxRejects rows, or more than maxPercent of the rows
+	 * read, are rejected. The percentage is tested once 1000 rows have been
+	 * read, and again at the end of the file.
+	 * @param fileName		Reject file
+	 * @param maxRejects	Number of rejects allowed
+	 * @param maxPercent	Percentage of rows allowed to be rejected
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited rejects (String fileName,long maxRejects,double maxPercent) {
+		this.rejectFile = fileName;
+		this.maxRejects = maxRejects;
+		this.maxRejectPercent = maxPercent;
+		return this;
+		}
+
+	/**
+	 * Resume a failed load from a checkpoint. The file is opened at the
+	 * checkpoint offset without reading the rows before it, and header
+	 * lines are not skipped again. For compressed files the data before the
+	 * checkpoint is decompressed and discarded.
+	 * @param checkpoint	Last checkpoint reported for the failed load
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited resumeFrom (Checkpoint checkpoint) {
+		this.rangeStart = checkpoint.getOffset();
+		this.rowsBefore = checkpoint.getRows();
+		return this;
+		}
+
+	/**
+	 * Reuse one Object[] for the rows returned by getRowData(), and return
+	 * shared boxes for small integers and repeated decimals, to cut the
+	 * garbage created per row. A row's array is overwritten once next() is
+	 * called again. SQLServerBulkCopy sends each row before asking for the
+	 * next, but a caller that keeps rows must not use this. Rows converted
+	 * ahead by parallel() or pipeline() only share boxes.
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited reuseRows() {
+		this.reuseRows = true;
+		this.shareBoxes = true;
+		for (Column col: columns) col.compile (this.nullText);
+		return this;
+		}
+	
+	/**
+	 * Specify the row delimiter to be used when parsing the input file.
+	 * @param delimiter String containing one or more characters
+	 * @return this
+	 */
+	
+	public SQLServerBulkRecordDelimited rowDelimiter (String delimiter) {
+		this.rowDelimiter = delimiter.toCharArray();
+		this.rowDelimiterLength = rowDelimiter.length;
+		return this;
+		}
+	
+	/**
+	 * Specify the row delimiter to be used when parsing the input file.
+	 * @param delimiter Array of one or more characters
+	 * @return this
+	 */
+	
+	public SQLServerBulkRecordDelimited rowDelimiter (char[] delimiter) {
+		this.rowDelimiter = delimiter;
+		this.rowDelimiterLength = rowDelimiter.length;
+		return this;
+		}
+	
+	/**
+	 * Skip a field of the file. Skipped fields are scanned past for the
+	 * delimiter but never converted, and are left out of the column
+	 * metadata. Use in place of column() to keep the file layout.
+	 * @return this
+	 */
+	
+	public SQLServerBulkRecordDelimited skipColumn() {
+		return skipColumn (1);
+		}
+	
+	/**
+	 * Skip a number of consecutive fields of the file.
+	 * @param count	Number of fields
+	 * @return this
+	 */
+	
+	public SQLServerBulkRecordDelimited skipColumn (int count) {
+		for (int i=0; i<count; ++i) columns.add (new Column (null));
+		loaded = null;
+		return this;
+		}
+	
+	/**
+	 * Check that rows are sent in ascending order of key columns, such as
+	 * those of the clustered index they are loaded into. The check is made
+	 * on the converted rows as the driver reads them, and getSortCheck()
+	 * reports the result and the first row out of order. scanSorted()
+	 * checks the file before the load. Rows from unordered parallel() are
+	 * not in file order.
+	 * @param columns	Key column names, most significant first
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited sortedBy (String... columns) {
+		this.sortColumns = columns;
+		return this;
+		}
+	
+	/**
+	 * Set the number of lines to skip at the beginning of a file. Used to
+	 * bypass column headers.
+	 * @param skipLines 
+	 * @return this
+	 */
+
+	public SQLServerBulkRecordDelimited skipLines (Integer skipLines) {
+		this.skipLines = skipLines;
+		return this;
+		}
+	
+	//--------------------------------------------------------------------------
+	//	ISQLServerBulkRecord Interface Implementation
+	//--------------------------------------------------------------------------
+	
+    /**
+     * Release any resources associated with the file reader.
+     * @throws SQLServerException
+     */
+	 
+	@Override
+    public void close() throws SQLServerException {
+ 
+        // Ignore errors since we are only cleaning up here
+        if (parallelReader != null) {
+            parallelReader.close();
+            parallelReader = null;
+            }
+        if (fileRecord != null) {
+            fileRecord.close();
+            fileRecord = null;
+            }
+        if (cacheRecord != null) {
+            cacheRecord.close();
+            cacheRecord = null;
+            }
+        if (cacheWriter != null) {
+            cacheWriter.close();
+            cacheWriter = null;
+            }
+        if (fileOpener != null) {
+            fileOpener.shutdown();
+            fileOpener = null;
+            }
+        if (nextFileRecord != null)
+            try {
+                nextFileRecord.get().close();
+				nextFileRecord = null;
+            	}
+            catch (Exception e) {
+				nextFileRecord = null;
+            	}
+        if (reader != null)
+            try {
+                reader.close();
+				reader = null;
+            	}
+            catch (Exception e) {
+            	}
+        if (isr != null)
+            try {
+                isr.close();
+				isr = null;
+            	}
+            catch (Exception e) {
+            	}
+        if (inflater != null)
+            try {
+                inflater.close();
+				inflater = null;
+            	}
+            catch (Exception e) {
+            	}
+        if (rejects != null && ownsRejects) rejects.close();
+        if (timed && metricsListener != null) reportMetrics (true);
+        if (mbeanName != null)
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean (mbeanName);
+				mbeanName = null;
+            	}
+            catch (Exception e) {
+            	}
+        if (fis != null)
+            try {
+                fis.close();
+				fis = null;
+            	}
+            catch (Exception e) {
+            	}
+
+     	}
+	
+	/**
+	 * Get the metrics of the load, set up with metrics(), metricsListener()
+	 * or metricsMBean().
+	 * @return Metrics, or null if not collected or the record is not open
+	 */
+
+	public LoadMetrics getMetrics() {
+		return metrics;
+		}
+	
+	/**
+	 * Get the order check set up with sortedBy(), complete once every row
+	 * has been sent.
+	 * @return Check of the rows sent so far, or null
+	 */
+
+	public SortCheck getSortCheck() {
+		return sortCheck;
+		}
+	
+	/**
+	 * Check that the file is in the order given by sortedBy() before
+	 * loading it, reading row-aligned chunks of the file with several
+	 * threads. The record is not opened.
+	 * @param threads	Number of threads
+	 * @return Result of the check
+	 * @throws SQLServerException 
+	 */
+
+	public SortCheck scanSorted (int threads) throws SQLServerException {
+		if (this.sortColumns == null) throw new SQLServerException ("File=" + sourceName() + ", Err=No sortedBy() columns to check",null,0,null);
+		return SortCheck.scan (this,threads);
+		}
+	
+	/**
+	 * Positions of the sortedBy() columns among the loaded columns.
+	 * @return Base-0 loaded column numbers
+	 * @throws SQLServerException if a name is not a loaded column
+	 */
+
+	protected int[] sortKeys() throws SQLServerException {
+		int[] fields = loaded();
+		int[] keys = new int[sortColumns.length];
+		for (int i=0; i<keys.length; ++i) {
+			keys[i] = -1;
+			for (int k=0; k<fields.length; ++k) if (columns.get (fields[k]).name.equalsIgnoreCase (sortColumns[i])) keys[i] = k;
+			if (keys[i] < 0) throw new SQLServerException ("File=" + sourceName() + ", Err=No column " + sortColumns[i] + " for sortedBy()",null,0,null);
+			}
+		return keys;
+		}
+	
+	/**
+	 * Get the number of rows written to the reject file.
+	 * @return Rejected rows
+	 */
+
+	public long getRejectCount() {
+		return (rejects == null) ? 0 : rejects.getRejected();
+		}
+	
+	/**
+	 * Get the String cache for a column set up with intern(), to report its
+	 * hit rate.
+	 * @param name	Column name
+	 * @return Cache, or null if the column does not intern its values
+	 */
+
+	public StringCache getInternCache (String name) {
+		for (Column col: columns) if (name.equalsIgnoreCase (col.name)) return col.cache;
+		return null;
+		}
+	
+	/**
+	 * Get statistics for the row queue used by parallel() and pipeline().
+	 * @return Queue statistics, or null if rows are parsed on the calling thread
+	 */
+
+	public QueueStats getQueueStats() {
+		return (parallelReader == null) ? null : parallelReader.getStats();
+		}
+	
+	/**
+	 * Get the set of column identifiers.
+	 * @return set	Set of integer identifiers.
+	 */
+
+    @Override
+    public Set<Integer> getColumnOrdinals() {
+		Set<Integer> set = new HashSet<>();
+		for (int i=0; i<loaded().length; ++i) set.add (i+1);
+        return set;
+		}
+	
+	/**
+	 * Get the name of a column.
+	 * @param column Base-1 number of column
+	 * @return 
+	 */
+
+    @Override
+    public String getColumnName(int column) {
+        return columns.get(loaded()[column-1]).name;
+		}
+	
+	/**
+	 * Get the data type for a column
+	 * @param column Base-1 number of column
+	 * @return java.sql.Type value
+	 */
+
+    @Override
+    public int getColumnType(int column) {
+        return columns.get(loaded()[column-1]).type;
+		}
+	
+	/**
+	 * Get column precision.
+	 * @param column
+	 * @return 
+	 */
+
+    @Override
+    public int getPrecision(int column) {
+        return columns.get(loaded()[column-1]).precision;
+		}
+	
+	/**
+	 * Get column scale.
+	 * @param column
+	 * @return 
+	 */
+
+    @Override
+    public int getScale(int column) {
+       return columns.get(loaded()[column-1]).scale;
+		}
+	
+	/**
+	 * Auto-Increment values are not supported for delimited files.
+	 * @param column IGNORE
+	 * @return IGNORE
+	 */
+
+    @Override
+    public boolean isAutoIncrement(int column) {
+        return false;
+		}
+	
+	/**
+	 * Get array of objects representing data sent to SQL Server in specified type.
+	 * @return Array of objects
+	 * @throws SQLServerException 
+	 */
+
+    @Override
+    public Object[] getRowData() throws SQLServerException {
+        
+		if (!timed) return checkSorted (cacheRow (rowData()));
+		long start = System.nanoTime();
+		if (lastReturn != 0) metrics.driverNanos.add (start - lastReturn);
+		Object[] o = checkSorted (cacheRow (rowData()));
+		lastReturn = System.nanoTime();
+		metrics.getRowDataNanos.add (lastReturn - start);
+		return o;
+		}
+
+	/**
+	 * Get the current row from whichever source is converting rows.
+	 * @return Array of objects
+	 * @throws SQLServerException
+	 */
+
+	protected Object[] rowData() throws SQLServerException {
+		if (cacheRecord != null) return cacheRecord.getRowData();
+		if (parallelReader != null) return parallelReader.getRowData();
+		if (fileRecord != null) return fileRecord.rowData();
+		if (batchRows > 0 && batch != null) {
+			if (rowError != null) throw rowError;
+			if (batchIndex >= batch.size) return null;
+			if (!reuseRows) return batch.getRow (batchIndex);
+			if (rowBuffer == null) rowBuffer = new Object[batch.getColumnCount()];
+			return batch.getRow (batchIndex,rowBuffer);
+			}
+		if (rejects != null) return converted;
+		return convertRow();
+		}
+
+	/**
+	 * Convert the current row, noting the column and reason for any error.
+	 * @return Array of objects
+	 * @throws SQLServerException
+	 */
+
+	protected Object[] convertRow() throws SQLServerException {
+
+		if (row == null) return null;
+
+		// Split the row into column ranges
+		int count = tokenizer.tokenize(this.row);
+		CharSequence text = tokenizer.text();
+		if (count != columns.size()) throw countError (count);
 
 		// Create an array to fill with values of appropriate data type.
-		Object[] o = new Object[values.length];
+		int[] fields = loaded();
+		if (reuseRows && rowBuffer == null) rowBuffer = new Object[fields.length];
+		Object[] o = reuseRows ? rowBuffer : new Object[fields.length];
+		boolean sample = (metrics != null && metricsSampleInterval > 0 && ++sampleCount % metricsSampleInterval == 0);
 
-		// Step through the value array to create output objects
-		for (int i=0; i<columns.size(); ++i) {
+		// Step through the loaded column ranges to create output objects
+		for (int k=0; k<fields.length; ++k) {
 
+			int i = fields[k];
 			Column col = columns.get(i);
-			SimpleDateFormat sdf = col.format;
-			String value = values[i];
+			int start = tokenizer.start(i);
+			int end = tokenizer.end(i);
 			
 			try {
+				long t = sample ? System.nanoTime() : 0;
+				o[k] = col.converter.convert (text,start,end);
+				if (sample) metrics.conversion (k,System.nanoTime() - t);
+				}
+			
+			catch (Exception e) {
+				throw valueError (i,text,start,end,e);
+				}
+			
+			}
+		
+		if (metrics != null) metrics.nulls (o);
 
-				// Support the use of nullText to allow differentiation
-				// between NULL and EMPTY strings.
+		// Return the object array
+		return o;
+		}
 
-				if (col.type == Types.CHAR
-					|| col.type == Types.LONGNVARCHAR
-					|| col.type == Types.LONGVARCHAR
-					|| col.type == Types.NCHAR
-					|| col.type == Types.NVARCHAR
-					|| col.type == Types.VARCHAR) {
-					if (this.nullText != null && value.equals(this.nullText)) value = null;
-					}
-				else {
-					if (value.length() < 1) value = null;
-					}
-				
-				// Perform type conversions to create output objects.
+	/**
+	 * Error for a row with the wrong number of fields, noting the reason
+	 * for the reject file.
+	 * @param count	Fields found
+	 * @return Exception to throw
+	 */
 
-				if (value == null) o[i] = null;
-				
-				else if (col.type == Types.INTEGER) {
-					o[i] = Integer.valueOf(value);
-					}
+	protected SQLServerException countError (int count) {
+		errorColumn = null;
+		errorReason = MessageFormat.format("{0} values, {1} expected.",count,columns.size());
+		String msg = MessageFormat.format("{0}, Err={1} values, {2} expected.",location(),count,columns.size());
+		return new SQLServerException (msg,null,0,null);
+		}
 
-				else if (col.type == Types.TINYINT
-					|| col.type == Types.SMALLINT) {
-					o[i] = Short.valueOf(value);
-					}
+	/**
+	 * Error for a value that does not convert, noting the column and reason
+	 * for the reject file.
+	 * @param i		Base-0 field number
+	 * @param text	Row text
+	 * @param start	Offset of the value
+	 * @param end	Offset one past the value
+	 * @param e		Conversion error
+	 * @return Exception to throw
+	 */
 
-				else if (col.type == Types.BIGINT) {
-					BigDecimal bd = new BigDecimal(value.trim());
-					o[i] = bd.setScale(0, RoundingMode.DOWN).longValueExact();
-					}
+	protected SQLServerException valueError (int i,CharSequence text,int start,int end,Exception e) {
+		errorColumn = columns.get(i).name;
+		errorReason = e.getMessage();
+		String value = text.subSequence(start,end).toString();
+		String msg = MessageFormat.format ("{0}, Col={1}, Val={2}, Err={3}",location(),i,value,e.getMessage());
+		return new SQLServerException (msg,null,0,e);
+		}
 
-				else if (col.type == Types.DECIMAL
-					|| col.type == Types.NUMERIC) {
-					BigDecimal bd = new BigDecimal(value.trim());
-					o[i] = bd.setScale(col.scale, RoundingMode.HALF_UP);
-					}
+	/**
+	 * Create an unopened copy of this record with the same file, format and
+	 * column settings. Column definitions are immutable and shared.
+	 * @return Copy of this record
+	 */
 
-				else if (col.type == Types.BIT) {
-					if (value.equals("0")) o[i] = 0;
-					else if (value.equals("1")) o[i] = 1;
-					else throw new Exception ("Binary not 1 or 0");
-					}
+	protected SQLServerBulkRecordDelimited copy() {
+		SQLServerBulkRecordDelimited c = new SQLServerBulkRecordDelimited();
+		c.fileName = this.fileName;
+		c.fileNames = this.fileNames;
+		c.files = this.files;
+		c.rowDelimiter = this.rowDelimiter;
+		c.rowDelimiterLength = this.rowDelimiterLength;
+		c.colDelimiter = this.colDelimiter;
+		c.encoding = this.encoding;
+		c.nullText = this.nullText;
+		c.shareBoxes = this.shareBoxes;
+		c.quote = this.quote;
+		c.recordLength = this.recordLength;
+		c.rejectFile = this.rejectFile;
+		c.maxRejects = this.maxRejects;
+		c.maxRejectPercent = this.maxRejectPercent;
+		c.rejects = this.rejects;
+		c.readerBufferSize = this.readerBufferSize;
+		c.readMode = this.readMode;
+		c.decompressThreads = this.decompressThreads;
+		c.skipLines = this.skipLines;
+		c.rangeStart = this.rangeStart;
+		c.rangeEnd = this.rangeEnd;
+		c.rowsBefore = this.rowsBefore;
+		c.checkpointRows = this.checkpointRows;
+		c.batchRows = this.batchRows;
+		c.metrics = this.metrics;
+		c.metricsSampleInterval = this.metricsSampleInterval;
+		for (Column col: this.columns) {
+			if (col.skipped) c.columns.add (c.new Column (col.name));
+			else {
+				Column k = c.new Column (col.name,col.type,col.precision,col.scale,col.format,col.custom,col.cache);
+				k.position = col.position;
+				k.length = col.length;
+				k.trim = col.trim;
+				c.columns.add (k);
+				}
+			}
+		return c;
+		}
 
-				else if (col.type == Types.REAL) {
-					o[i] = Float.parseFloat(values[i]);
-					}
+	/**
+	 * Positions in the file of the columns that are loaded.
+	 * @return Base-0 field numbers, in file order
+	 */
 
-				else if (col.type == Types.DOUBLE) {
-					o[i] = Double.parseDouble(value);
-					}
-				
-				else if (col.type == Types.DATE) {
-					o[i] = new java.sql.Date(sdf.parse (value).getTime());
-					}
+	protected int[] loaded() {
+		if (loaded == null) {
+			int n = 0;
+			for (Column col: columns) if (!col.skipped) ++ n;
+			int[] a = new int[n];
+			n = 0;
+			for (int i=0; i<columns.size(); ++i) if (!columns.get(i).skipped) a[n++] = i;
+			loaded = a;
+			}
+		return loaded;
+		}
 
-				else if (col.type == Types.TIME) {
-					o[i] = new java.sql.Time(sdf.parse (value).getTime());
-					}
+	/**
+	 * Line number of the current row in the file, for error messages. For a
+	 * byte range, the rows before the range are counted on first use.
+	 * @return Line number
+	 */
 
-				else if (col.type == Types.TIMESTAMP) {
-					o[i] = new java.sql.Timestamp(sdf.parse (value).getTime());
-					}
+	protected long rowNumber() {
+		if (rowBase < 0) {
+			try {
+				RowAlignedSplitter splitter = new RowAlignedSplitter (fis.getChannel(),RowAlignedSplitter.delimiterBytes(this.rowDelimiter,Charset.forName(encoding)));
+				rowBase = splitter.countRows (0,rangeStart);
+				}
+			catch (Exception e) {
+				rowBase = 0;
+				}
+			}
+		return rowBase + rowCount;
+		}
+
+	/**
+	 * Location of the current row for error messages, naming the file when
+	 * the load is one of several files.
+	 * @return Row=n, or File=name, Row=n
+	 */
+
+	protected String location() {
+		String row = MessageFormat.format ("Row={0}",rowNumber());
+		return nameFile ? "File=" + fileName + ", " + row : row;
+		}
+
+	/**
+	 * Test whether a java.sql.Types value is a character type, to which
+	 * nullText applies.
+	 * @param type	java.sql.Types data type
+	 * @return true for character types
+	 */
+
+	protected static boolean isCharacter (int type) {
+		return type == Types.CHAR
+			|| type == Types.LONGNVARCHAR
+			|| type == Types.LONGVARCHAR
+			|| type == Types.NCHAR
+			|| type == Types.NVARCHAR
+			|| type == Types.VARCHAR;
+		}
+
+	/**
+	 * Get next row from file.
+	 * @return true on row, false at end of file
+	 * @throws SQLServerException 
+	 */
+
+	@Override
+	public boolean next() throws SQLServerException {
+		if (!timed) return advance();
+		long start = System.nanoTime();
+		if (lastReturn != 0) metrics.driverNanos.add (start - lastReturn);
+		boolean more = advance();
+		lastReturn = System.nanoTime();
+		metrics.nextNanos.add (lastReturn - start);
+		if (more) metrics.rows.increment();
+		if (metricsListener != null && lastReturn - lastReport >= metricsIntervalNanos) {
+			lastReport = lastReturn;
+			reportMetrics (false);
+			}
+		return more;
+		}
+
+	/**
+	 * Pass the metrics to the listener, ignoring any error it raises.
+	 */
+
+	protected void reportMetrics (boolean done) {
+		try {
+			metricsListener.metrics (metrics,done);
+			}
+		catch (Exception e) {
+			}
+		}
 
-				else if (col.type == Types.TIMESTAMP_WITH_TIMEZONE) {
-					o[i] = sdf.parse (value).toInstant().atZone(ZoneId.of("UTC")).toOffsetDateTime();
+	/**
+	 * Advance to the next row, reporting any checkpoint due first.
+	 * @return true on row, false at end of file
+	 * @throws SQLServerException
+	 */
+
+	protected boolean advance() throws SQLServerException {
+		if (checkpointListener != null && delivered > 0 && delivered % checkpointRows == 0) checkpoint();
+		if (nextRow()) {
+			++ delivered;
+			return true;
+			}
+		if (cacheWriter != null) finishCache();
+		return false;
+		}
+
+	/**
+	 * Report a checkpoint after the last row sent.
+	 * @throws SQLServerException
+	 */
+
+	protected void checkpoint() throws SQLServerException {
+		Checkpoint c = new Checkpoint (this.rowEnd,this.rowsBefore + this.rowCount);
+		try {
+			checkpointListener.checkpoint (c);
+			}
+		catch (Exception e) {
+			String msg = MessageFormat.format ("Row={0}, Err={1}",rowNumber(),e.getMessage());
+			throw new SQLServerException (msg,null,0,e);
+			}
+		}
+
+	/**
+	 * Advance to the next row that converts, or the next row if there is no
+	 * reject file.
+	 * @return true on row, false at end of file
+	 * @throws SQLServerException
+	 */
+
+	protected boolean nextRow() throws SQLServerException {
+		if (cacheRecord != null) return cacheRecord.next();
+		if (parallelReader != null) {
+			if (parallelReader.next()) return true;
+			checkRejects();
+			return false;
+			}
+
+		// Several files run on from one to the next
+		if (fileRecord != null) {
+			while (fileIndex < files.size()) {
+				if (fileRecord.nextRow()) {
+					this.rowEnd = fileRecord.rowEnd;
+					return true;
 					}
+				nextFile();
+				}
+			checkRejects();
+			return false;
+			}
+
+		if (batchRows > 0) return nextBatchRow();
+
+		// With a reject file, rows are converted here so that bad rows
+		// can be passed over.
+		while (readRow()) {
+			if (rejects == null) return true;
+			rejects.read();
+			try {
+				converted = convertRow();
+				return true;
+				}
+			catch (SQLServerException e) {
+				reject (e);
+				}
+			}
+		converted = null;
+		checkRejects();
+		return false;
+		}
 
-				else if (col.type == Types.BINARY
-					|| col.type == Types.VARBINARY
-					|| col.type == Types.LONGVARBINARY
-					|| col.type == Types.BLOB) {
-					String binData = value.trim();
-					if (binData.startsWith("0x") || binData.startsWith("0X")) o[i] = binData.substring(2);
-					else o[i] = binData;
+	/**
+	 * Step to the next row of the block, parsing the next block when this
+	 * one is used up. An error that ended the block is raised once the rows
+	 * before it have been returned: a read error or exceeded reject limit
+	 * by next(), a conversion error by getRowData().
+	 * @return true on row, false at end of file
+	 * @throws SQLServerException
+	 */
+
+	protected boolean nextBatchRow() throws SQLServerException {
+		rowError = null;
+		if (batch == null) {
+			batch = newBatch();
+			linesRead = rowCount;
+			}
+		while (++ batchIndex >= batch.size) {
+			if (batch.error != null) {
+				SQLServerException e = batch.error;
+				batch.error = null;
+				if (batch.errorInNext) {
+					rowCount = linesRead;
+					throw e;
 					}
+				rowCount = batch.lines[batch.size];
+				rowEnd = batch.ends[batch.size];
+				rowError = e;
+				return true;
+				}
+			rowCount = linesRead;
+			if (batchEnded) {
+				checkRejects();
+				return false;
+				}
+			batch.clear();
+			batchEnded = fillBatch (batch);
+			linesRead = rowCount;
+			batchIndex = -1;
+			}
+		rowEnd = batch.ends[batchIndex];
+		rowCount = batch.lines[batchIndex];
+		return true;
+		}
+
+	/**
+	 * Get the next block of rows, for reading the file by column without
+	 * JDBC. Rows are parsed straight into the block when read on this
+	 * thread, and copied into it from parallel(), pipeline() or a cache
+	 * replay. A row that fails to convert ends the block, and the error is
+	 * raised by the following call. Not to be mixed with next(), and no
+	 * checkpoints are reported. The block is reused by the next call.
+	 * @return Block of rows, of columnar() rows or 1024 if not set, or null
+	 * 			at the end of the file
+	 * @throws SQLServerException
+	 */
+
+	public ColumnBatch nextBatch() throws SQLServerException {
+		if (batch == null) batch = newBatch();
+		else if (batch.error != null) {
+			SQLServerException e = batch.error;
+			batch.error = null;
+			throw e;
+			}
+		if (batchEnded) return null;
+
+		batch.clear();
+		batchEnded = fillNext (batch);
+		if (cacheWriter != null) {
+			try {
+				cacheWriter.write (batch);
+				}
+			catch (Exception ex) {
+				cacheWriter.close();
+				cacheWriter = null;
+				}
+			}
+		if (timed) metrics.rows.add (batch.size);
+		if (sortCheck != null) {
+			for (int r=0; r<batch.size; ++r) {
+				if (sortCheck.check (batch,r)) sortCheck.violation (rowBase + batch.lines[r],(fileRecord != null) ? fileRecord.fileName : null);
+				}
+			}
+
+		// Rejects are tested once the rows of the last block are known
+		if (batchEnded) {
+			try {
+				if (cacheWriter != null) finishCache();
+				if (parallelReader == null) checkRejects();
+				}
+			catch (SQLServerException ex) {
+				batch.error = ex;
+				}
+			}
+		if (batch.size == 0 && batch.error != null) {
+			SQLServerException e = batch.error;
+			batch.error = null;
+			throw e;
+			}
+		return (batch.size == 0) ? null : batch;
+		}
+
+	/**
+	 * Fill a block from whichever source is reading rows.
+	 * @param b	Block to fill from b.size
+	 * @return true at the end of the file
+	 */
+
+	protected boolean fillNext (ColumnBatch b) {
 
-				else if (col.type == Types.NULL) {
-					o[i] = null;
+		// Several files run on from one to the next
+		if (fileRecord != null) {
+			while (fileIndex < files.size()) {
+				if (!fileRecord.fillBatch (b)) return false;
+				try {
+					nextFile();
 					}
+				catch (SQLServerException ex) {
+					b.error = ex;
+					b.errorInNext = true;
+					return false;
+					}
+				}
+			return true;
+			}
+		if (cacheRecord == null && parallelReader == null) return fillBatch (b);
+
+		// Rows converted elsewhere are copied in
+		while (b.size < b.capacity) {
+			try {
+				if (!nextRow()) return true;
+				b.ends[b.size] = rowEnd;
+				b.lines[b.size] = rowCount;
+				b.put (b.size,rowData());
+				++ b.size;
+				}
+			catch (SQLServerException ex) {
+				b.error = ex;
+				return false;
+				}
+			}
+		return false;
+		}
+
+	/**
+	 * Read and parse rows into a block until it is full, or a row fails.
+	 * With a reject file, rows that fail are rejected and passed over.
+	 * @param b	Block to fill from b.size
+	 * @return true at the end of the file
+	 */
 
-				else { 
-					o[i] = value;
+	protected boolean fillBatch (ColumnBatch b) {
+		int[] fields = loaded();
+		while (b.size < b.capacity) {
+			int r = b.size;
+			try {
+				if (!readRow()) return true;
+				}
+			catch (SQLServerException ex) {
+				b.error = ex;
+				b.errorInNext = true;
+				return false;
+				}
+			if (rejects != null) rejects.read();
+			b.ends[r] = rowEnd;
+			b.lines[r] = rowCount;
+			SQLServerException e = parseRow (b,r,fields);
+			if (e == null) ++ b.size;
+			else if (rejects == null) {
+				b.error = e;
+				return false;
+				}
+			else {
+				try {
+					reject (e);
 					}
+				catch (SQLServerException ex) {
+					b.error = ex;
+					b.errorInNext = true;
+					return false;
+					}
+				}
+			}
+		return false;
+		}
 
+	/**
+	 * Split the current row and parse its loaded columns into a block.
+	 * @param b			Block
+	 * @param r			Row in the block
+	 * @param fields	Loaded fields
+	 * @return null, or the error for a row that does not convert
+	 */
+
+	protected SQLServerException parseRow (ColumnBatch b,int r,int[] fields) {
+		int count = tokenizer.tokenize(this.row);
+		CharSequence text = tokenizer.text();
+		if (count != columns.size()) return countError (count);
+		boolean sample = (metrics != null && metricsSampleInterval > 0 && ++sampleCount % metricsSampleInterval == 0);
+		for (int k=0; k<fields.length; ++k) {
+			int i = fields[k];
+			int start = tokenizer.start(i);
+			int end = tokenizer.end(i);
+			try {
+				long t = sample ? System.nanoTime() : 0;
+				b.parse (k,r,text,start,end);
+				if (sample) metrics.conversion (k,System.nanoTime() - t);
 				}
-			
 			catch (Exception e) {
-				String msg = MessageFormat.format ("Row={0}, Col={1}, Val={2}, Err={3}",rowCount,i,value,e.getMessage());
-				throw new SQLServerException (msg,null,0,e);
+				return valueError (i,text,start,end,e);
 				}
-			
 			}
-		
-		// Return the object array
-		return o;
+		if (metrics != null) metrics.nulls (b,r);
+		return null;
 		}
 
 	/**
-	 * Get next row from file.
+	 * Create the block for columnar parsing of the loaded columns. Columns
+	 * with a custom converter or intern() keep their converted values.
+	 * @return Empty block
+	 */
+
+	protected ColumnBatch newBatch() {
+		int[] fields = loaded();
+		int n = fields.length;
+		String[] names = new String[n];
+		int[] types = new int[n];
+		ColumnConverter[] converters = new ColumnConverter[n];
+		boolean[] objectOnly = new boolean[n];
+		for (int k=0; k<n; ++k) {
+			Column col = columns.get (fields[k]);
+			names[k] = col.name;
+			types[k] = col.type;
+			converters[k] = col.converter;
+			objectOnly[k] = (col.custom != null || col.cache != null);
+			}
+		ColumnBatch b = new ColumnBatch ((batchRows > 0) ? batchRows : 1024,names,types,converters,objectOnly,nullText);
+		b.shareBoxes = this.shareBoxes;
+		return b;
+		}
+
+	/**
+	 * Read the next row from the file. A row with a quoted field running
+	 * over several lines counts each line, so rowCount stays the line
+	 * number, of the last line of such a row.
 	 * @return true on row, false at end of file
-	 * @throws SQLServerException 
+	 * @throws SQLServerException if a quoted field is still open at the end
+	 *         of the file
 	 */
 
-	@Override
-	public boolean next() throws SQLServerException {
+	protected boolean readRow() throws SQLServerException {
 		++ this.rowCount;
 		try {
-			this.row = reader.readLine();
+			this.row = reader.readRow();
+			this.rowOffset = reader.getLineOffset();
+
+			// A quoted field may run on past row delimiters. Each line is
+			// scanned as it is added, starting inside the open field.
+			if (this.row != null && this.quote != 0 && tokenizer.isOpenQuoted (this.row)) {
+				StringBuilder sb = new StringBuilder (this.row);
+				CharSequence more;
+				boolean open = true;
+				while (open && (more = reader.readRow()) != null) {
+					++ this.rowCount;
+					int from = sb.length();
+					sb.append (this.rowDelimiter).append (more);
+					open = tokenizer.isOpenQuoted (sb,from,true);
+					}
+				this.row = sb;
+				if (open) throw new Exception ("Quoted field not closed at end of file");
+				}
+			this.rowEnd = reader.getPosition();
 			}
 		catch (Exception e) {
-			String msg = MessageFormat.format ("Row={0}, Err={1}",rowCount,e.getMessage());
+			String msg = MessageFormat.format ("{0}, Err={1}",location(),e.getMessage());
 			throw new SQLServerException (msg,null,0,e);
 			}
 		return (null != this.row);
 		}
+
+	/**
+	 * Write the current row to the reject file.
+	 * @param e	Conversion error
+	 * @throws SQLServerException if the reject limit is exceeded
+	 */
+
+	protected void reject (SQLServerException e) throws SQLServerException {
+		long number = rowNumber();
+		boolean allowed;
+		try {
+			allowed = rejects.reject (this.row.toString(),nameFile ? fileName : null,number,this.rowOffset,this.errorColumn,this.errorReason);
+			}
+		catch (Exception x) {
+			String msg = MessageFormat.format ("{0}, Err={1}",location(),x.getMessage());
+			throw new SQLServerException (msg,null,0,x);
+			}
+		if (!allowed) {
+			String msg = MessageFormat.format ("{0}, Err=Rejects exceed {1}, last {2}",location(),rejects.limits(),this.errorReason);
+			throw new SQLServerException (msg,null,0,e);
+			}
+		}
+
+	/**
+	 * Create the reject log for rejects(), to be shared by every reader of
+	 * the load. Any existing reject file is removed.
+	 * @return Reject log
+	 * @throws java.io.IOException
+	 */
+
+	protected RejectLog newRejectLog() throws java.io.IOException {
+		return new RejectLog (this.rejectFile,this.encoding,(this.recordLength > 0) ? new char[0] : this.rowDelimiter,this.maxRejects,this.maxRejectPercent);
+		}
+
+	/**
+	 * Test the rejects against the limits at the end of the file, once the
+	 * total number of rows is known.
+	 * @throws SQLServerException
+	 */
+
+	protected void checkRejects() throws SQLServerException {
+		if (rejects == null || !ownsRejects) return;
+		if (!rejects.withinLimits()) {
+			String msg = MessageFormat.format ("Row={0}, Err=Rejects exceed {1}, {2} of {3} rows rejected",rowNumber(),rejects.limits(),rejects.getRejected(),rejects.getRowsRead());
+			throw new SQLServerException (msg,null,0,null);
+			}
+		}
 	
 	}
@@ -0,0 +1,394 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.FileInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import com.microsoft.sqlserver.jdbc.SQLServerException;
+
+/**
+ * Check that rows are in ascending order of one or more key columns, as
+ * needed to declare the order of a bulk load into a clustered index. Keys
+ * are compared column by column, with NULL before any value as SQL Server
+ * sorts it. Character keys are compared by character code, which matches
+ * a binary collation only.
+ *
+ * A check is kept by a record with sortedBy() as rows are sent, or made
+ * before the load by scan() over row-aligned chunks of the file.
+ */
+
+public class SortCheck {
+
+	protected final String[] columns;
+	protected final int[] keys;
+
+	// Keys of the first and the last row checked, and of the row checked
+	// next, which holds the keys of the row before the last once checked
+	protected Object[] first = null;
+	protected Object[] last = null;
+	protected Object[] next;
+
+	protected long rows = 0;
+	protected boolean sorted = true;
+
+	// Rows passed over by scan() because they failed to convert
+	protected long failed = 0;
+
+	// First row out of order: its line number and file, and its keys and
+	// those of the row before it
+	protected long violationRow = -1;
+	protected String violationFile = null;
+	protected Object[] violationKeys = null;
+	protected Object[] violationBefore = null;
+
+	// Line number of the first row, for a check made by scan()
+	protected long firstRow = -1;
+
+	/**
+	 * Create a check of rows in order of the key columns.
+	 * @param columns	Names of the key columns
+	 * @param keys		Base-0 loaded column numbers of the keys
+	 */
+
+	public SortCheck (String[] columns,int[] keys) {
+		this.columns = columns;
+		this.keys = keys;
+		this.next = new Object[keys.length];
+		}
+
+	/**
+	 * Check the next row.
+	 * @param row	Converted row
+	 * @return true if this is the first row found out of order, to be
+	 * 			passed to violation()
+	 */
+
+	public boolean check (Object[] row) {
+		for (int i=0; i<keys.length; ++i) next[i] = row[keys[i]];
+		return checkNext();
+		}
+
+	/**
+	 * Check the next row of a block.
+	 * @param batch	Block of rows
+	 * @param row	Row in the block
+	 * @return true if this is the first row found out of order
+	 */
+
+	public boolean check (ColumnBatch batch,int row) {
+		for (int i=0; i<keys.length; ++i) next[i] = batch.getObject (keys[i],row);
+		return checkNext();
+		}
+
+	/**
+	 * Compare the keys in next with the last row, then make them the last.
+	 */
+
+	protected boolean checkNext() {
+		++ rows;
+		boolean found = false;
+		if (first == null) first = next.clone();
+		else if (sorted && compare (last,next) > 0) {
+			sorted = false;
+			found = true;
+			}
+		Object[] k = last;
+		last = next;
+		next = (k != null) ? k : new Object[keys.length];
+		return found;
+		}
+
+	/**
+	 * Note where the first row out of order was found, when check() has
+	 * returned true for it.
+	 * @param row	Line number of the row
+	 * @param file	File holding the row, when loading several, or null
+	 */
+
+	public void violation (long row,String file) {
+		violationRow = row;
+		violationFile = file;
+		violationKeys = last.clone();
+		violationBefore = next.clone();
+		}
+
+	/**
+	 * Compare two rows of keys.
+	 * @param a	Keys
+	 * @param b	Keys
+	 * @return Negative, zero or positive as a sorts before, with or after b
+	 */
+
+	public static int compare (Object[] a,Object[] b) {
+		for (int i=0; i<a.length; ++i) {
+			int c = compare (a[i],b[i]);
+			if (c != 0) return c;
+			}
+		return 0;
+		}
+
+	/**
+	 * Compare two key values, NULL first. byte[] values are compared as
+	 * unsigned bytes, as BINARY keys sort.
+	 */
+
+	@SuppressWarnings ("unchecked")
+	protected static int compare (Object a,Object b) {
+		if (a == null || b == null) return (a == null) ? ((b == null) ? 0 : -1) : 1;
+		if (a instanceof byte[]) {
+			byte[] x = (byte[]) a;
+			byte[] y = (byte[]) b;
+			for (int i=0; i<Math.min (x.length,y.length); ++i) {
+				int c = (x[i] & 0xff) - (y[i] & 0xff);
+				if (c != 0) return c;
+				}
+			return x.length - y.length;
+			}
+		return ((Comparable<Object>) a).compareTo (b);
+		}
+
+	/**
+	 * Show keys with their column names.
+	 */
+
+	protected String format (Object[] k) {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<columns.length; ++i) {
+			if (i > 0) sb.append (", ");
+			sb.append (columns[i]).append ('=').append (k[i]);
+			}
+		return sb.toString();
+		}
+
+	/**
+	 * @return Names of the key columns
+	 */
+
+	public String[] getColumns() {
+		return columns.clone();
+		}
+
+	/**
+	 * @return true if every row checked is in order
+	 */
+
+	public boolean isSorted() {
+		return sorted;
+		}
+
+	/**
+	 * @return Number of rows checked
+	 */
+
+	public long getRows() {
+		return rows;
+		}
+
+	/**
+	 * @return Number of rows passed over by scan() because they failed to
+	 * 			convert, and so not checked
+	 */
+
+	public long getFailed() {
+		return failed;
+		}
+
+	/**
+	 * @return Line number of the first row out of order, or -1
+	 */
+
+	public long getViolationRow() {
+		return violationRow;
+		}
+
+	/**
+	 * @return File holding the first row out of order, when loading
+	 * 			several files, or null
+	 */
+
+	public String getViolationFile() {
+		return violationFile;
+		}
+
+	/**
+	 * @return Location and keys of the first row out of order, or null
+	 */
+
+	public String getViolation() {
+		if (violationKeys == null) return null;
+		String row = MessageFormat.format ("Row={0}, {1} after {2}",violationRow,format (violationKeys),format (violationBefore));
+		return (violationFile != null) ? "File=" + violationFile + ", " + row : row;
+		}
+
+	@Override
+	public String toString() {
+		String s = sorted ? MessageFormat.format ("Sorted, {0} rows",rows) : "Not sorted, " + getViolation();
+		return (failed > 0) ? s + MessageFormat.format (", {0} rows failed to convert",failed) : s;
+		}
+
+	//--------------------------------------------------------------------------
+	//	Scan before the load
+	//--------------------------------------------------------------------------
+
+	/**
+	 * Check the order of a file before loading it. The data after any
+	 * header lines is split into row-aligned chunks checked by several
+	 * threads, and the last row of each chunk is compared with the first
+	 * row of the next. Files that cannot be split, such as compressed,
+	 * quoted or fixed-length record files, or files whose row delimiter
+	 * can overlap itself, are read whole, and several
+	 * files are each read whole in parallel. Rows that fail to convert are
+	 * passed over and counted in getFailed().
+	 * @param record	Record definition with sortedBy(), not opened
+	 * @param threads	Number of threads
+	 * @return Result of the check
+	 * @throws SQLServerException if the file cannot be read
+	 */
+
+	public static SortCheck scan (SQLServerBulkRecordDelimited record,int threads) throws SQLServerException {
+
+		List<String> files;
+		long[] bounds = null;
+		try {
+			files = record.resolveFiles();
+			if (files.size() == 1 && record.quote == 0 && record.recordLength == 0 && !RowAlignedSplitter.overlaps (record.rowDelimiter)) bounds = split (record,files.get (0),threads * 4);
+			}
+		catch (Exception ex) {
+			throw new SQLServerException ("File=" + record.sourceName() + ", Err=" + ex.getMessage(),null,0,ex);
+			}
+		int[] keys = record.sortKeys();
+
+		// A chunk is a byte range of the file, or a whole file
+		int chunks = (bounds != null) ? bounds.length - 1 : files.size();
+		ExecutorService executor = Executors.newFixedThreadPool (Math.max (1,Math.min (threads,chunks)),r -> {
+			Thread t = new Thread (r,"BulkRecordDelimited-sort");
+			t.setDaemon (true);
+			return t;
+			});
+		List<Future<SortCheck>> futures = new ArrayList<>();
+		for (int i=0; i<chunks; ++i) {
+			SQLServerBulkRecordDelimited c = record.copy();
+			c.rejectFile = null;
+			c.rejects = null;
+			c.files = Collections.singletonList ((bounds != null) ? files.get (0) : files.get (i));
+			c.fileName = c.files.get (0);
+			if (bounds != null) c.range (bounds[i],bounds[i + 1]);
+			else c.nameFile = (files.size() > 1);
+			futures.add (executor.submit (() -> scanChunk (c,new SortCheck (record.sortColumns,keys))));
+			}
+		executor.shutdown();
+
+		// Chunks in file order, each compared with the one before. Line
+		// numbers in a byte range are counted from its start, and the lines
+		// before it are only counted for a violation.
+		SortCheck result = new SortCheck (record.sortColumns,keys);
+		for (int i=0; i<chunks; ++i) {
+			SortCheck k;
+			try {
+				k = futures.get (i).get();
+				}
+			catch (Exception ex) {
+				executor.shutdownNow();
+				Throwable cause = (ex.getCause() != null) ? ex.getCause() : ex;
+				if (cause instanceof SQLServerException) throw (SQLServerException) cause;
+				throw new SQLServerException ("File=" + record.sourceName() + ", Err=" + cause.getMessage(),null,0,cause);
+				}
+			if (k.first == null) continue;
+			if (result.sorted && result.last != null && compare (result.last,k.first) > 0) {
+				result.sorted = false;
+				result.violationRow = k.firstRow + rowsBefore (record,files.get (0),bounds,i);
+				result.violationFile = (bounds == null && files.size() > 1) ? files.get (i) : null;
+				result.violationKeys = k.first;
+				result.violationBefore = result.last;
+				}
+			if (result.sorted && !k.sorted) {
+				result.sorted = false;
+				result.violationRow = k.violationRow + rowsBefore (record,files.get (0),bounds,i);
+				result.violationFile = k.violationFile;
+				result.violationKeys = k.violationKeys;
+				result.violationBefore = k.violationBefore;
+				}
+			result.failed += k.failed;
+			if (result.first == null) result.first = k.first;
+			result.rows += k.rows;
+			result.last = k.last;
+			}
+		return result;
+		}
+
+	/**
+	 * Split a file into row-aligned chunks after its header lines.
+	 * @param record	Record definition, for the delimiter, encoding and range
+	 * @param fileName	File to split
+	 * @param parts		Number of chunks
+	 * @return Chunk bounds, or null for a compressed file
+	 */
+
+	protected static long[] split (SQLServerBulkRecordDelimited record,String fileName,int parts) throws java.io.IOException {
+		try (FileInputStream fis = new FileInputStream (fileName)) {
+			FileChannel channel = fis.getChannel();
+			if (SQLServerBulkRecordDelimited.isCompressed (fileName,channel)) return null;
+			RowAlignedSplitter splitter = new RowAlignedSplitter (channel,RowAlignedSplitter.delimiterBytes(record.rowDelimiter,Charset.forName(record.encoding)));
+			long end = Math.min (record.rangeEnd,channel.size());
+			long start = splitter.skipRows (record.rangeStart,end,(record.rangeStart == 0) ? record.skipLines : 0);
+			return splitter.split (start,end,parts);
+			}
+		}
+
+	/**
+	 * Count the lines before a chunk, for the line number of a violation.
+	 * @param record	Record definition, for the delimiter and encoding
+	 * @param fileName	File split by split()
+	 * @param bounds	Chunk bounds, or null if the file was not split
+	 * @param chunk		Base-0 chunk number
+	 */
+
+	protected static long rowsBefore (SQLServerBulkRecordDelimited record,String fileName,long[] bounds,int chunk) throws SQLServerException {
+		if (bounds == null) return 0;
+		try (FileInputStream fis = new FileInputStream (fileName)) {
+			RowAlignedSplitter splitter = new RowAlignedSplitter (fis.getChannel(),RowAlignedSplitter.delimiterBytes(record.rowDelimiter,Charset.forName(record.encoding)));
+			return splitter.countRows (0,bounds[chunk]);
+			}
+		catch (Exception ex) {
+			throw new SQLServerException ("File=" + fileName + ", Err=" + ex.getMessage(),null,0,ex);
+			}
+		}
+
+	/**
+	 * Check the rows of one chunk with its own record, numbering them from
+	 * the start of the chunk.
+	 * @param c		Record for the chunk, not opened
+	 * @param k		Check for the chunk
+	 * @return The check
+	 */
+
+	protected static SortCheck scanChunk (SQLServerBulkRecordDelimited c,SortCheck k) throws SQLServerException {
+		try {
+			c.open();
+			String file = c.nameFile ? c.fileName : null;
+			while (c.next()) {
+				Object[] row;
+				try {
+					row = c.getRowData();
+					}
+				catch (SQLServerException ex) {
+					++ k.failed;
+					continue;
+					}
+				if (k.check (row)) k.violation (c.rowCount,file);
+				if (k.firstRow < 0) k.firstRow = c.rowCount;
+				}
+			}
+		finally {
+			c.close();
+			}
+		return k;
+		}
+
+	}
@@ -0,0 +1,128 @@
+package SQLServerBulkRecordDelimited;
+
+/**
+ * Bounded cache of Strings for low-cardinality character columns. Values
+ * are looked up by the content of a character range, so a String is only
+ * created on a miss. The cache is 4-way set-associative with clock
+ * eviction within each set.
+ *
+ * The cache may be shared by parallel workers without locking. Entries are
+ * immutable and replaced whole, so a racing lookup sees either the old or
+ * the new entry. Hit and miss counts are approximate under concurrent use.
+ */
+
+public class StringCache {
+
+	protected static final int WAYS = 4;
+
+	protected static final class Entry {
+		final int hash;
+		final String value;
+		boolean referenced = true;
+
+		Entry (int hash,String value) {
+			this.hash = hash;
+			this.value = value;
+			}
+		}
+
+	// Sets of WAYS entries, and the clock hand for each set
+	protected final Entry[] entries;
+	protected final int[] hands;
+	protected final int mask;
+
+	protected long hits = 0;
+	protected long misses = 0;
+
+	/**
+	 * Create a cache holding up to about maxEntries values.
+	 * @param maxEntries	Capacity, rounded up to a power of two
+	 */
+
+	public StringCache (int maxEntries) {
+		if (maxEntries < 1) throw new IllegalArgumentException ("maxEntries < 1");
+		int sets = Integer.highestOneBit (Math.max (1,(maxEntries + WAYS - 1) / WAYS) * 2 - 1);
+		this.entries = new Entry[sets * WAYS];
+		this.hands = new int[sets];
+		this.mask = sets - 1;
+		}
+
+	/**
+	 * Get the shared String for a range of characters, adding it to the
+	 * cache if not present.
+	 * @param s		Characters holding the value
+	 * @param start	Offset of first character
+	 * @param end	Offset one past the last character
+	 * @return Shared String
+	 */
+
+	public String get (CharSequence s,int start,int end) {
+
+		int h = 0;
+		for (int i=start; i<end; ++i) h = 31 * h + s.charAt(i);
+		int set = (h ^ (h >>> 16)) & mask;
+		int base = set * WAYS;
+
+		for (int w=0; w<WAYS; ++w) {
+			Entry e = entries[base + w];
+			if (e != null && e.hash == h && ColumnConverters.regionEquals (s,start,end,e.value)) {
+				if (!e.referenced) e.referenced = true;
+				++ hits;
+				return e.value;
+				}
+			}
+
+		// Miss. Advance the clock hand past recently used entries.
+		++ misses;
+		String value = ColumnConverters.substring (s,start,end);
+		int hand = hands[set];
+		for (int n=0; n<WAYS * 2; ++n) {
+			Entry e = entries[base + hand];
+			if (e == null || !e.referenced) break;
+			e.referenced = false;
+			hand = (hand + 1) & (WAYS - 1);
+			}
+		entries[base + hand] = new Entry (h,value);
+		hands[set] = (hand + 1) & (WAYS - 1);
+		return value;
+		}
+
+	/**
+	 * @return Number of lookups found in the cache
+	 */
+
+	public long getHits() {
+		return hits;
+		}
+
+	/**
+	 * @return Number of lookups that created a String
+	 */
+
+	public long getMisses() {
+		return misses;
+		}
+
+	/**
+	 * @return Fraction of lookups found in the cache
+	 */
+
+	public double getHitRate() {
+		long total = hits + misses;
+		return (total == 0) ? 0 : (double) hits / total;
+		}
+
+	/**
+	 * @return Number of entries the cache can hold
+	 */
+
+	public int getCapacity() {
+		return entries.length;
+		}
+
+	@Override
+	public String toString() {
+		return String.format ("capacity=%d hits=%d misses=%d hitRate=%.3f",getCapacity(),hits,misses,getHitRate());
+		}
+
+	}
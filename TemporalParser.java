@@ -0,0 +1,282 @@
+package SQLServerBulkRecordDelimited;
+
+import java.sql.Types;
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+
+/**
+ * Immutable parser for DATE, TIME, TIMESTAMP and TIMESTAMP_WITH_TIMEZONE
+ * columns, compiled once per column and safe to share between threads.
+ * Values in ISO layout (yyyy-MM-dd HH:mm:ss[.fffffffff][+/-hh:mm]) are parsed
+ * directly from the characters when the format allows it, anything else
+ * goes through a DateTimeFormatter built from the format string.
+ */
+
+public class TemporalParser {
+
+	// Format as given, and the formatter compiled from it
+	protected final String format;
+	protected final DateTimeFormatter formatter;
+
+	// java.sql.Types value the parser produces
+	protected final int type;
+
+	// Zone applied to TIMESTAMP_WITH_TIMEZONE values without an offset
+	protected final ZoneId defaultZone;
+
+	// True if the format is an ISO layout the fast path can handle
+	protected final boolean fastPath;
+
+	/**
+	 * Compile a parser for a column.
+	 * @param format	DateTimeFormatter pattern, compatible with the
+	 * 					SimpleDateFormat patterns used previously
+	 * @param type		java.sql.Types DATE, TIME, TIMESTAMP or TIMESTAMP_WITH_TIMEZONE
+	 */
+
+	public TemporalParser (String format,int type) {
+		this.format = format;
+		this.type = type;
+		this.formatter = compile (format);
+		this.defaultZone = ZoneId.systemDefault();
+		this.fastPath = isIsoLayout (format,type);
+		}
+
+	/**
+	 * Build the formatter for a pattern. A y or yy run reads a year of two
+	 * digits as SimpleDateFormat did, within 80 years before and 20 after
+	 * now, where DateTimeFormatter would read y as the year as written and
+	 * yy as 2000 to 2099. Other years are read as written. The rest of the
+	 * pattern is passed to appendPattern().
+	 */
+
+	protected static DateTimeFormatter compile (String format) {
+		DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().parseCaseInsensitive().parseLenient();
+		LocalDate century = LocalDate.now().minusYears (80);
+		int from = 0;
+		boolean quoted = false;
+		for (int i=0; i<format.length(); ++i) {
+			char c = format.charAt(i);
+			if (c == '\'') quoted = !quoted;
+			if (quoted || c != 'y') continue;
+			int run = 1;
+			while (i + run < format.length() && format.charAt(i + run) == 'y') ++ run;
+			if (run <= 2) {
+				appendPattern (builder,format.substring (from,i));
+				builder.appendValueReduced (ChronoField.YEAR_OF_ERA,2,4,century);
+				from = i + run;
+				}
+			i += run - 1;
+			}
+		appendPattern (builder,format.substring (from));
+		return builder.toFormatter();
+		}
+
+	/**
+	 * Append part of a pattern, opening and closing its optional sections
+	 * here, since a section may begin or end in another part.
+	 */
+
+	protected static void appendPattern (DateTimeFormatterBuilder builder,String pattern) {
+		int from = 0;
+		boolean quoted = false;
+		for (int i=0; i<pattern.length(); ++i) {
+			char c = pattern.charAt(i);
+			if (c == '\'') quoted = !quoted;
+			if (quoted || (c != '[' && c != ']')) continue;
+			if (i > from) builder.appendPattern (pattern.substring (from,i));
+			if (c == '[') builder.optionalStart();
+			else builder.optionalEnd();
+			from = i + 1;
+			}
+		if (pattern.length() > from) builder.appendPattern (pattern.substring (from));
+		}
+
+	/**
+	 * Test whether a format describes the ISO layout, ignoring field widths.
+	 */
+
+	protected static boolean isIsoLayout (String format,int type) {
+
+		// Collapse each run of a pattern letter to one letter, and drop
+		// fractional seconds, which the fast path always accepts.
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<format.length(); ++i) {
+			char c = format.charAt(i);
+			if (i > 0 && Character.isLetter(c) && c == format.charAt(i - 1)) continue;
+			sb.append(c);
+			}
+		String p = sb.toString().replace(".S","").replace("'T'"," ").replace("XXX","X");
+
+		switch (type) {
+			case Types.DATE:
+				return p.equals("y-M-d");
+			case Types.TIME:
+				return p.equals("H:m:s");
+			case Types.TIMESTAMP:
+				return p.equals("y-M-d H:m:s");
+			case Types.TIMESTAMP_WITH_TIMEZONE:
+				return p.equals("y-M-d H:m:s X") || p.equals("y-M-d H:m:sX");
+			default:
+				return false;
+			}
+		}
+
+	/**
+	 * Parse a range of characters.
+	 * @param s		Characters holding the value
+	 * @param start	Offset of first character
+	 * @param end	Offset one past the last character
+	 * @return java.sql.Date, java.sql.Time, java.sql.Timestamp or OffsetDateTime
+	 * @throws DateTimeParseException
+	 */
+
+	public Object parse (CharSequence s,int start,int end) {
+		if (fastPath) {
+			Object o = parseIso (s,start,end);
+			if (o != null) return o;
+			}
+		return parseFormatted (s,start,end);
+		}
+
+	/**
+	 * Parse with the compiled formatter. As with SimpleDateFormat, text
+	 * after the end of the pattern is ignored.
+	 */
+
+	protected Object parseFormatted (CharSequence s,int start,int end) {
+
+		CharSequence text = s.subSequence (start,end);
+		TemporalAccessor t = formatter.parse (text,new ParsePosition(0));
+
+		LocalDate date = t.query (TemporalQueries.localDate());
+		LocalTime time = t.query (TemporalQueries.localTime());
+		if (time == null) time = LocalTime.MIDNIGHT;
+		if (type == Types.TIME) return toTime (time);
+		if (date == null) throw new DateTimeParseException ("No date in value",text,0);
+		if (type == Types.DATE) return java.sql.Date.valueOf (date);
+		if (type == Types.TIMESTAMP) return java.sql.Timestamp.valueOf (LocalDateTime.of (date,time));
+
+		ZoneOffset offset = t.query (TemporalQueries.offset());
+		return toUtc (LocalDateTime.of (date,time),offset);
+		}
+
+	/**
+	 * Parse yyyy-MM-dd, HH:mm:ss[.f], yyyy-MM-dd HH:mm:ss[.f] and
+	 * yyyy-MM-dd HH:mm:ss[.f][ ](Z|+/-hh[[:]mm]) directly from the characters.
+	 * @return Parsed value, or null if the text has a different layout
+	 */
+
+	protected Object parseIso (CharSequence s,int start,int end) {
+
+		int i = start;
+		int year = 0, month = 0, day = 0;
+		int hour = 0, minute = 0, second = 0, nanos = 0;
+
+		if (type != Types.TIME) {
+			if (end - i < 10 || s.charAt(i + 4) != '-' || s.charAt(i + 7) != '-') return null;
+			year = digits (s,i,4);
+			month = digits (s,i + 5,2);
+			day = digits (s,i + 8,2);
+			if (year < 0 || month < 0 || day < 0) return null;
+			i += 10;
+			if (type == Types.DATE) return (i == end) ? java.sql.Date.valueOf (LocalDate.of (year,month,day)) : null;
+			if (i == end || (s.charAt(i) != ' ' && s.charAt(i) != 'T')) return null;
+			++ i;
+			}
+
+		if (end - i < 8 || s.charAt(i + 2) != ':' || s.charAt(i + 5) != ':') return null;
+		hour = digits (s,i,2);
+		minute = digits (s,i + 3,2);
+		second = digits (s,i + 6,2);
+		if (hour < 0 || minute < 0 || second < 0) return null;
+		i += 8;
+
+		// Optional fraction of up to nine digits
+		if (i < end && s.charAt(i) == '.') {
+			++ i;
+			int n = 0;
+			while (i < end && n < 9 && isDigit (s.charAt(i))) {
+				nanos = nanos * 10 + (s.charAt(i) - '0');
+				++ i;
+				++ n;
+				}
+			if (n == 0 || (i < end && isDigit (s.charAt(i)))) return null;
+			for (; n<9; ++n) nanos *= 10;
+			}
+
+		if (type == Types.TIME) return (i == end) ? toTime (LocalTime.of (hour,minute,second,nanos)) : null;
+		LocalDateTime ldt = LocalDateTime.of (year,month,day,hour,minute,second,nanos);
+		if (type == Types.TIMESTAMP) return (i == end) ? java.sql.Timestamp.valueOf (ldt) : null;
+
+		// Optional offset, Z or +/-hh, +/-hhmm, +/-hh:mm
+		if (i < end && s.charAt(i) == ' ') ++ i;
+		if (i == end) return toUtc (ldt,null);
+		char c = s.charAt(i);
+		if (c == 'Z' || c == 'z') return (i + 1 == end) ? toUtc (ldt,ZoneOffset.UTC) : null;
+		if (c != '+' && c != '-') return null;
+		int length = end - i - 1;
+		int oh = (length >= 2) ? digits (s,i + 1,2) : -1;
+		int om = 0;
+		if (length == 4) om = digits (s,i + 3,2);
+		else if (length == 5 && s.charAt(i + 3) == ':') om = digits (s,i + 4,2);
+		else if (length != 2) return null;
+		if (oh < 0 || om < 0) return null;
+		int sign = (c == '-') ? -1 : 1;
+		return toUtc (ldt,ZoneOffset.ofHoursMinutes (sign * oh,sign * om));
+		}
+
+	/**
+	 * Convert a local time to a java.sql.Time, keeping the milliseconds
+	 * that Time.valueOf() drops.
+	 */
+
+	protected static java.sql.Time toTime (LocalTime t) {
+		return new java.sql.Time (java.sql.Time.valueOf (t).getTime() + t.getNano() / 1000000);
+		}
+
+	/**
+	 * Convert a local date and time to an OffsetDateTime in UTC. Values
+	 * without an offset are taken to be in the default time zone.
+	 */
+
+	protected Object toUtc (LocalDateTime ldt,ZoneOffset offset) {
+		if (offset == null) return ldt.atZone (defaultZone).toOffsetDateTime().withOffsetSameInstant (ZoneOffset.UTC);
+		return ldt.atOffset (offset).withOffsetSameInstant (ZoneOffset.UTC);
+		}
+
+	/**
+	 * Read a fixed number of decimal digits.
+	 * @return Value, or -1 if any character is not a digit
+	 */
+
+	protected static int digits (CharSequence s,int start,int count) {
+		int v = 0;
+		for (int i=start; i<start + count; ++i) {
+			char c = s.charAt(i);
+			if (!isDigit (c)) return -1;
+			v = v * 10 + (c - '0');
+			}
+		return v;
+		}
+
+	protected static boolean isDigit (char c) {
+		return c >= '0' && c <= '9';
+		}
+
+	@Override
+	public String toString() {
+		return format;
+		}
+
+	}
@@ -0,0 +1,119 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks over a file written by FileGenerator: BufferedReaderDelimited
+ * alone, and the record through next() and getRowData() with a Blackhole
+ * in place of SQLServerBulkCopy, each in every ReadMode and buffer size.
+ * Each call reads the whole file, so scores are files per second. Run
+ * with allocation per operation from the gc profiler:
+ *
+ *     mvn -Pjmh verify -DskipTests
+ *     mvn -Pjmh verify -DskipTests -Djmh.args="-prof gc -p rows=1000000 ReadBenchmark.record"
+ */
+
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 3,time = 2)
+@Measurement (iterations = 5,time = 2)
+@Fork (1)
+public class ReadBenchmark {
+
+	// File settings, see FileGenerator
+	@Param ({ "100000" })
+	public long rows;
+
+	@Param ({ "INTEGER,BIGINT,DECIMAL,TIMESTAMP,VARCHAR" })
+	public String columns;
+
+	@Param ({ "," })
+	public String colDelimiter;
+
+	@Param ({ "0.05" })
+	public double nullDensity;
+
+	@Param ({ "0.1" })
+	public double multibyte;
+
+	// Reader settings
+	@Param ({ "4096", "65536", "1048576" })
+	public int bufferSize;
+
+	@Param ({ "STREAM", "CHANNEL", "MAPPED" })
+	public ReadMode mode;
+
+	protected FileGenerator generator;
+	protected String fileName;
+
+	@Setup (Level.Trial)
+	public void generate() throws Exception {
+		File file = File.createTempFile ("ReadBenchmark",".txt");
+		file.deleteOnExit();
+		fileName = file.getPath();
+		generator = new FileGenerator().rows (rows).columns (columns).colDelimiter (colDelimiter).nullDensity (nullDensity).multibyte (multibyte);
+		generator.write (fileName);
+		}
+
+	@TearDown (Level.Trial)
+	public void delete() {
+		new File (fileName).delete();
+		}
+
+	/**
+	 * Read every row with BufferedReaderDelimited alone.
+	 */
+
+	@Benchmark
+	public long reader (Blackhole blackhole) throws Exception {
+		long n = 0;
+		try (FileInputStream fis = new FileInputStream (fileName)) {
+			BufferedReaderDelimited reader;
+			if (mode == ReadMode.STREAM) reader = new BufferedReaderDelimited (new DecodingReader (fis,StandardCharsets.UTF_8),bufferSize);
+			else reader = new BufferedReaderDelimited (fis.getChannel(),StandardCharsets.UTF_8,bufferSize,mode == ReadMode.MAPPED);
+			reader.setDelimiter ("\n");
+			CharSequence row;
+			while ((row = reader.readRow()) != null) {
+				blackhole.consume (row);
+				++ n;
+				}
+			reader.close();
+			}
+		return n;
+		}
+
+	/**
+	 * Read every row as SQLServerBulkCopy would, taking each value.
+	 */
+
+	@Benchmark
+	public long record (Blackhole blackhole) throws Exception {
+		long n = 0;
+		try (SQLServerBulkRecordDelimited r = generator.record (fileName).readMode (mode).bufferSize (bufferSize).open()) {
+			while (r.next()) {
+				for (Object o: r.getRowData()) blackhole.consume (o);
+				++ n;
+				}
+			}
+		return n;
+		}
+
+	}
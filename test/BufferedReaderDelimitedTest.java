@@ -0,0 +1,118 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that readRow() returns the same rows in every ReadMode with the
+ * smallest buffer, for rows longer than the buffer and row delimiters of
+ * several characters cut off by the end of a fill at every offset. Run
+ * with:
+ *
+ *     java SQLServerBulkRecordDelimited.BufferedReaderDelimitedTest
+ *
+ * Exits with status 1 if any check fails.
+ */
+
+public class BufferedReaderDelimitedTest {
+
+	protected static int checks = 0;
+	protected static int failures = 0;
+
+	public static void main (String[] args) throws Exception {
+		for (String delimiter: new String[] { "\r\n", "||~", "\n" }) {
+			for (Charset charset: new Charset[] { StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16LE }) {
+				for (boolean multibyte: new boolean[] { false, true }) {
+					if (multibyte && !charset.equals (StandardCharsets.UTF_8)) continue;
+					for (boolean trailing: new boolean[] { false, true }) compare (delimiter,charset,multibyte,trailing);
+					}
+				}
+			}
+		System.out.println (String.format ("%d checks, %d failed",checks,failures));
+		System.exit ((failures > 0) ? 1 : 0);
+		}
+
+	protected static void check (boolean ok,String what) {
+		++ checks;
+		if (ok) return;
+		++ failures;
+		System.out.println ("FAILED " + what);
+		}
+
+	/**
+	 * Rows of each length from 0 to a little over the buffer, so that the
+	 * delimiter after them falls across the end of a fill at every offset,
+	 * then rows of several buffers. Values hold the start of the delimiter,
+	 * or a carriage return for a newline, but never the whole of it.
+	 */
+
+	protected static List<String> rows (String delimiter,boolean multibyte) {
+		Random random = new Random (delimiter.hashCode());
+		String chars = "abcdefghij0123456789,;\t " + (multibyte ? "\u00e9\u00df\u20ac\u4e2d\ud83d\ude00" : "");
+		String parts = (delimiter.length() > 1) ? delimiter.substring (0,delimiter.length() - 1) : "\r";
+		List<String> rows = new ArrayList<>();
+		for (int length=0; length<1100; ++length) rows.add (value (random,chars,parts,length));
+		for (int length: new int[] { 2047, 2048, 2049, 3000, 5000, 9000 }) rows.add (value (random,chars,parts,length));
+		for (int n=0; n<200; ++n) rows.add (value (random,chars,parts,1 + random.nextInt (40)));
+		return rows;
+		}
+
+	protected static String value (Random random,String chars,String parts,int length) {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < length) {
+			if (random.nextInt (20) == 0) sb.append (parts);
+			else if (random.nextInt (40) == 0) sb.append (parts.charAt (0));
+			else {
+				int i = random.nextInt (chars.length());
+				if (Character.isHighSurrogate (chars.charAt (i))) sb.append (chars,i,i + 2);
+				else if (Character.isLowSurrogate (chars.charAt (i))) sb.append (chars,i - 1,i + 1);
+				else sb.append (chars.charAt (i));
+				}
+			}
+		return sb.toString();
+		}
+
+	/**
+	 * Write the rows to a file and read them back in each ReadMode.
+	 */
+
+	protected static void compare (String delimiter,Charset charset,boolean multibyte,boolean trailing) throws Exception {
+		List<String> expected = rows (delimiter,multibyte);
+		String text = String.join (delimiter,expected) + (trailing ? delimiter : "");
+		File f = File.createTempFile ("BufferedReaderDelimitedTest",".txt");
+		f.deleteOnExit();
+		Files.write (f.toPath(),text.getBytes (charset));
+		String what = (delimiter.equals ("\r\n") ? "\\r\\n" : delimiter.equals ("\n") ? "\\n" : delimiter) + " " + charset + (multibyte ? " multibyte" : "") + (trailing ? " trailing" : "");
+		for (ReadMode mode: ReadMode.values()) {
+			List<String> rows = read (f,mode,charset,delimiter);
+			check (rows.size() == expected.size(),mode + " " + what + " rows " + rows.size() + ", expected " + expected.size());
+			for (int i=0; i<Math.min (rows.size(),expected.size()); ++i) {
+				if (rows.get (i).equals (expected.get (i))) continue;
+				check (false,mode + " " + what + " row " + i + " of length " + rows.get (i).length() + ", expected " + expected.get (i).length());
+				break;
+				}
+			}
+		f.delete();
+		}
+
+	protected static List<String> read (File f,ReadMode mode,Charset charset,String delimiter) throws Exception {
+		List<String> rows = new ArrayList<>();
+		try (FileInputStream fis = new FileInputStream (f)) {
+			BufferedReaderDelimited reader;
+			if (mode == ReadMode.STREAM) reader = new BufferedReaderDelimited (new DecodingReader (fis,charset),1024);
+			else reader = new BufferedReaderDelimited (fis.getChannel(),charset,1024,mode == ReadMode.MAPPED);
+			reader.setDelimiter (delimiter);
+			CharSequence row;
+			while ((row = reader.readRow()) != null) rows.add (row.toString());
+			reader.close();
+			}
+		return rows;
+		}
+
+	}
@@ -0,0 +1,112 @@
+package SQLServerBulkRecordDelimited;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * Tests of NumberParser against the String-based conversions it replaced,
+ * on random strings of digits, signs, points, spaces, letters and digits
+ * of other scripts. Each parse must return the same value, or throw the
+ * same exception with the same message. Run with:
+ *
+ *     java SQLServerBulkRecordDelimited.NumberParserTest
+ *
+ * Exits with status 1 if any check fails.
+ */
+
+public class NumberParserTest {
+
+	protected static int checks = 0;
+	protected static int failures = 0;
+
+	// Characters of the random strings, weighted towards ASCII digits. There
+	// is no exponent, as setScale() of 1e99999999 builds that many digits.
+	protected static final String CHARS = "01234567890123456789012345678901234567899-+.  \tx"
+		+ "\u0660\u0661\u0662\u0669\u06f1\u0966\u0967\uff10\uff11\uff19\u00b2\u2155";
+
+	public static void main (String[] args) throws Exception {
+		fixed();
+		random (200000,17);
+		System.out.println (String.format ("%d checks, %d failed",checks,failures));
+		System.exit ((failures > 0) ? 1 : 0);
+		}
+
+	protected static void check (boolean ok,String what) {
+		++ checks;
+		if (ok) return;
+		++ failures;
+		System.out.println ("FAILED " + what);
+		}
+
+	/**
+	 * Value, or exception class and message, of a call.
+	 */
+
+	protected static String outcome (Callable<Object> call) {
+		try {
+			Object o = call.call();
+			return o.getClass().getSimpleName() + " " + o;
+			}
+		catch (Exception e) {
+			return e.getClass().getName() + ": " + e.getMessage();
+			}
+		}
+
+	/**
+	 * Compare every parser with its String-based conversion on one value.
+	 * The value is placed inside a longer sequence to check the bounds are
+	 * kept to.
+	 */
+
+	protected static void compare (String value) {
+		CharSequence s = "9-" + value + "-9";
+		int start = 2;
+		int end = start + value.length();
+		String v = "\"" + value + "\"";
+		same (outcome (() -> NumberParser.parseInt (s,start,end)),outcome (() -> Integer.valueOf (value)),"parseInt " + v);
+		same (outcome (() -> NumberParser.parseShort (s,start,end)),outcome (() -> Short.valueOf (value)),"parseShort " + v);
+		same (outcome (() -> NumberParser.parseBigint (s,start,end)),outcome (() -> new BigDecimal (value.trim()).setScale (0,RoundingMode.DOWN).longValueExact()),"parseBigint " + v);
+		for (int scale: new int[] { 0, 2, 5 }) {
+			same (outcome (() -> NumberParser.parseDecimal (s,start,end,scale)),outcome (() -> new BigDecimal (value.trim()).setScale (scale,RoundingMode.HALF_UP)),"parseDecimal " + scale + " " + v);
+			}
+		}
+
+	protected static void same (String actual,String expected,String what) {
+		check (actual.equals (expected),what + " gave " + actual + ", expected " + expected);
+		}
+
+	/**
+	 * Limits of each type, and digits of other scripts, which the String
+	 * based conversions accept.
+	 */
+
+	protected static void fixed() {
+		String[] values = {
+			"", "-", "+", "0", "-0", "+0", "00012", " 12", "12 ", "1.5", "-1.5", "2.5", ".5", "5.", "1e3",
+			"32767", "32768", "-32768", "-32769",
+			"2147483647", "2147483648", "-2147483648", "-2147483649",
+			"9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+			"999999999999999999", "1000000000000000000", "123456789012345678.5", "0.000000000000000000001",
+			"\u0661\u0662", "-\u0661\u0662", "1\u0662", "\uff11\uff12\uff13", "\u0967\u0968", "\u00b2", "\u0661.\u0665"
+			};
+		for (String value: values) compare (value);
+		}
+
+	/**
+	 * Compare on random strings of up to 22 characters.
+	 */
+
+	protected static void random (int count,long seed) {
+		Random random = new Random (seed);
+		StringBuilder sb = new StringBuilder();
+		for (int n=0; n<count; ++n) {
+			sb.setLength (0);
+			int length = random.nextInt (23);
+			for (int i=0; i<length; ++i) sb.append (CHARS.charAt (random.nextInt (CHARS.length())));
+			compare (sb.toString());
+			}
+		}
+
+	}
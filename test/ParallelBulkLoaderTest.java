@@ -0,0 +1,265 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkRecord;
+
+/**
+ * Tests of splitting and loading a file with ParallelBulkLoader, and of
+ * reject limits, run without a server through a BulkRecordSink. Run with
+ * the driver on the class path:
+ *
+ *     java SQLServerBulkRecordDelimited.ParallelBulkLoaderTest
+ *
+ * Exits with status 1 if any check fails.
+ */
+
+public class ParallelBulkLoaderTest {
+
+	protected static int checks = 0;
+	protected static int failures = 0;
+
+	public static void main (String[] args) throws Exception {
+		splitsMatchSequentialRead ("\n");
+		splitsMatchSequentialRead ("\r\n");
+		rejectLimitsAcrossStreams();
+		rejectLimitsAcrossReaders();
+		overlappingDelimiters();
+		quotedFilesRefused();
+		System.out.println (String.format ("%d checks, %d failed",checks,failures));
+		System.exit ((failures > 0) ? 1 : 0);
+		}
+
+	protected static void check (boolean ok,String what) {
+		++ checks;
+		if (ok) return;
+		++ failures;
+		System.out.println ("FAILED " + what);
+		}
+
+	protected static File tempFile() throws Exception {
+		File f = File.createTempFile ("ParallelBulkLoaderTest",".txt");
+		f.deleteOnExit();
+		return f;
+		}
+
+	/**
+	 * Read every row of a record, each as text, in file order.
+	 */
+
+	protected static List<String> rows (ISQLServerBulkRecord record) throws Exception {
+		List<String> rows = new ArrayList<>();
+		while (record.next()) rows.add (Arrays.deepToString (record.getRowData()));
+		return rows;
+		}
+
+	/**
+	 * The rows of every stream together are the rows of a sequential read,
+	 * whatever the number of streams, with multibyte characters and CRLF
+	 * row ends falling near the chunk bounds.
+	 */
+
+	protected static void splitsMatchSequentialRead (String rowDelimiter) throws Exception {
+		File f = tempFile();
+		FileGenerator generator = new FileGenerator().rows (5000).rowDelimiter (rowDelimiter).multibyte (0.3).nullDensity (0.05).seed (7);
+		generator.write (f.getPath());
+
+		List<String> expected;
+		try (SQLServerBulkRecordDelimited r = generator.record (f.getPath()).open()) {
+			expected = rows (r);
+			}
+		Collections.sort (expected);
+		String name = (rowDelimiter.length() == 1) ? "LF" : "CRLF";
+
+		for (int streams: new int[] { 1, 2, 3, 7, 16, 61 }) {
+			List<List<String>> parts = new ArrayList<>();
+			for (int i=0; i<streams; ++i) parts.add (null);
+			ParallelBulkLoader.Result result = new ParallelBulkLoader ((stream,record) -> parts.set (stream,rows (record)),generator.record (f.getPath())).streams (streams).load();
+
+			String what = name + " streams=" + streams;
+			check (result.isSuccess(),what + " success " + result.getErrors());
+			check (result.getRowCount() == expected.size(),what + " row count " + result.getRowCount());
+			List<String> actual = new ArrayList<>();
+			for (int i=0; i<result.getStreams(); ++i) {
+				check (parts.get (i) != null && parts.get (i).size() == result.getRowCount (i),what + " stream " + i + " rows");
+				if (parts.get (i) != null) actual.addAll (parts.get (i));
+				check (i == 0 || result.getStart (i) == result.getEnd (i - 1),what + " stream " + i + " bounds");
+				}
+			Collections.sort (actual);
+			check (actual.equals (expected),what + " rows");
+			}
+		}
+
+	/**
+	 * Write a file of two columns with a bad integer on one row in every.
+	 */
+
+	protected static File rejectFile (int rows,int every) throws Exception {
+		File f = tempFile();
+		StringBuilder sb = new StringBuilder();
+		for (int i=1; i<=rows; ++i) sb.append ((i % every == 0) ? "x" : Integer.toString (i)).append ('|').append ("v").append (i).append ('\n');
+		Files.write (f.toPath(),sb.toString().getBytes (StandardCharsets.UTF_8));
+		return f;
+		}
+
+	protected static SQLServerBulkRecordDelimited rejectRecord (String fileName) throws Exception {
+		return new SQLServerBulkRecordDelimited().fileName (fileName).colDelimiter ("|").column ("a",Types.INTEGER).column ("b",Types.VARCHAR,20);
+		}
+
+	protected static int lines (File f) throws Exception {
+		return f.exists() ? Files.readAllLines (f.toPath(),StandardCharsets.UTF_8).size() : 0;
+		}
+
+	/**
+	 * Streams of ParallelBulkLoader share one reject file, and the limits
+	 * are for the whole load.
+	 */
+
+	protected static void rejectLimitsAcrossStreams() throws Exception {
+		File data = rejectFile (20000,40);
+		File rejects = tempFile();
+		File log = new File (rejects.getPath() + ".log");
+		log.deleteOnExit();
+
+		// 2.5% rejected, within 5%
+		ParallelBulkLoader.Result result = new ParallelBulkLoader ((stream,record) -> rows (record),rejectRecord (data.getPath()).rejects (rejects.getPath(),1000,5)).streams (4).load();
+		check (result.isSuccess(),"loader within limits " + result.getErrors());
+		check (result.getRowCount() == 19500,"loader rows " + result.getRowCount());
+		check (result.getRejected() == 500,"loader rejected " + result.getRejected());
+		check (lines (rejects) == 500,"loader reject file lines " + lines (rejects));
+		check (lines (log) == 500,"loader log lines " + lines (log));
+
+		// Over 2% of all rows, and over 100 rows
+		check (loadFails (rejectRecord (data.getPath()).rejects (rejects.getPath(),1000,2)),"loader over percentage");
+		check (loadFails (rejectRecord (data.getPath()).rejects (rejects.getPath(),100)),"loader over count");
+		}
+
+	protected static boolean loadFails (SQLServerBulkRecordDelimited record) {
+		try {
+			return !new ParallelBulkLoader ((stream,r) -> rows (r),record).streams (4).load().isSuccess();
+			}
+		catch (Exception e) {
+			return true;
+			}
+		}
+
+	/**
+	 * A reject percentage holds for sequential, parallel() and multi-file
+	 * reads alike, tested against all the rows read.
+	 */
+
+	protected static void rejectLimitsAcrossReaders() throws Exception {
+		File data = rejectFile (20000,33);
+		File second = rejectFile (20000,33);
+		File rejects = tempFile();
+		new File (rejects.getPath() + ".log").deleteOnExit();
+
+		// About 3% rejected, within 5%
+		for (int mode=0; mode<3; ++mode) {
+			SQLServerBulkRecordDelimited r = rejectRecord (data.getPath()).rejects (rejects.getPath(),100000,5);
+			if (mode == 1) r.parallel (4);
+			if (mode == 2) r.fileNames (data.getPath(),second.getPath());
+			String what = new String[] { "sequential", "parallel", "files" }[mode];
+			int files = (mode == 2) ? 2 : 1;
+			try {
+				r.open();
+				List<String> rows = rows (r);
+				check (rows.size() == files * (20000 - 606),what + " rows " + rows.size());
+				check (r.getRejectCount() == files * 606,what + " rejected " + r.getRejectCount());
+				}
+			catch (Exception e) {
+				check (false,what + " within limits " + e.getMessage());
+				}
+			finally {
+				r.close();
+				}
+
+			// Over 2%
+			r = rejectRecord (data.getPath()).rejects (rejects.getPath(),100000,2);
+			if (mode == 1) r.parallel (4);
+			if (mode == 2) r.fileNames (data.getPath(),second.getPath());
+			boolean failed = false;
+			try {
+				r.open();
+				rows (r);
+				}
+			catch (Exception e) {
+				failed = true;
+				}
+			finally {
+				r.close();
+				}
+			check (failed,what + " over percentage");
+			}
+		}
+
+	/**
+	 * A row delimiter that can overlap itself, such as ~~, could be matched
+	 * one character into a run of it, so a file with one is read whole
+	 * rather than split.
+	 */
+
+	protected static void overlappingDelimiters() throws Exception {
+		for (String d: new String[] { "~~", "||", "\n\n", "abab", "aXa" }) check (RowAlignedSplitter.overlaps (d.toCharArray()),"overlaps " + d);
+		for (String d: new String[] { "\n", "\r\n", "||~", "ab", "aXb" }) check (!RowAlignedSplitter.overlaps (d.toCharArray()),"does not overlap " + d);
+
+		// Every other value starts with the delimiter character
+		File f = tempFile();
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<2000; ++i) sb.append (i).append ('|').append ((i % 2 == 0) ? "~v" : "v").append (i).append ("~~");
+		Files.write (f.toPath(),sb.toString().getBytes (StandardCharsets.UTF_8));
+		SQLServerBulkRecordDelimited record = new SQLServerBulkRecordDelimited().fileName (f.getPath()).colDelimiter ("|").rowDelimiter ("~~").column ("a",Types.INTEGER).column ("b",Types.VARCHAR,20);
+
+		List<String> expected;
+		try (SQLServerBulkRecordDelimited r = record.copy().open()) {
+			expected = rows (r);
+			}
+		check (expected.size() == 2000,"overlapping sequential rows " + expected.size());
+		check (expected.get (2).equals ("[2, ~v2]"),"overlapping sequential value " + expected.get (2));
+
+		boolean failed = false;
+		try (SQLServerBulkRecordDelimited r = record.copy().parallel (4).open()) {
+			rows (r);
+			}
+		catch (Exception e) {
+			failed = e.getMessage().contains ("overlap");
+			}
+		check (failed,"overlapping parallel() refused");
+		check (loadFails (record.copy()),"overlapping loader refused");
+
+		SortCheck k = record.copy().sortedBy ("a").scanSorted (4);
+		check (k.isSorted() && k.getRows() == 2000,"overlapping scan " + k);
+		}
+
+	/**
+	 * A quoted row delimiter cannot be told apart when splitting, so a
+	 * record with quote() is refused rather than split inside a field.
+	 */
+
+	protected static void quotedFilesRefused() throws Exception {
+		File f = tempFile();
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<5000; ++i) sb.append (i).append ("|\"line\nbreak ").append (i).append ("\"\n");
+		Files.write (f.toPath(),sb.toString().getBytes (StandardCharsets.UTF_8));
+		SQLServerBulkRecordDelimited record = new SQLServerBulkRecordDelimited().fileName (f.getPath()).colDelimiter ("|").quote ('"').column ("a",Types.INTEGER).column ("b",Types.VARCHAR,20);
+
+		try (SQLServerBulkRecordDelimited r = record.copy().open()) {
+			check (rows (r).size() == 5000,"quoted sequential rows");
+			}
+		boolean refused = false;
+		try {
+			new ParallelBulkLoader ((stream,r) -> rows (r),record.copy()).streams (4).load();
+			}
+		catch (Exception e) {
+			refused = e.getMessage().contains ("quoted");
+			}
+		check (refused,"quoted loader refused");
+		}
+
+	}
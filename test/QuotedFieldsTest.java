@@ -0,0 +1,150 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests of quote(): doubled quotes, column and row delimiters inside
+ * quoted fields, quoted fields running over buffer fills, in each
+ * ReadMode and with pipeline(), and a quote left open at the end of the
+ * file. Run with the driver on the class path:
+ *
+ *     java SQLServerBulkRecordDelimited.QuotedFieldsTest
+ *
+ * Exits with status 1 if any check fails.
+ */
+
+public class QuotedFieldsTest {
+
+	protected static int checks = 0;
+	protected static int failures = 0;
+
+	public static void main (String[] args) throws Exception {
+		fields();
+		for (String[] delimiters: new String[][] { { ",", "\r\n" }, { "|~", "\n" }, { "\t", "||~" } }) fills (delimiters[0],delimiters[1]);
+		unterminated();
+		System.out.println (String.format ("%d checks, %d failed",checks,failures));
+		System.exit ((failures > 0) ? 1 : 0);
+		}
+
+	protected static void check (boolean ok,String what) {
+		++ checks;
+		if (ok) return;
+		++ failures;
+		System.out.println ("FAILED " + what);
+		}
+
+	protected static File write (String text) throws Exception {
+		File f = File.createTempFile ("QuotedFieldsTest",".txt");
+		f.deleteOnExit();
+		Files.write (f.toPath(),text.getBytes (StandardCharsets.UTF_8));
+		return f;
+		}
+
+	protected static SQLServerBulkRecordDelimited record (File f,String colDelimiter,String rowDelimiter) throws Exception {
+		return new SQLServerBulkRecordDelimited().fileName (f.getPath()).colDelimiter (colDelimiter).rowDelimiter (rowDelimiter).quote ('"')
+			.column ("id",Types.INTEGER).column ("a",Types.VARCHAR).column ("b",Types.VARCHAR);
+		}
+
+	protected static List<String> rows (SQLServerBulkRecordDelimited record) throws Exception {
+		List<String> rows = new ArrayList<>();
+		try (SQLServerBulkRecordDelimited r = record.open()) {
+			while (r.next()) rows.add (Arrays.deepToString (r.getRowData()));
+			}
+		return rows;
+		}
+
+	/**
+	 * Quoted fields of one row each.
+	 */
+
+	protected static void fields() throws Exception {
+		File f = write ("1,\"say \"\"hi\"\"\",\"\"\"\"\n"
+			+ "2,\"a,b\",\",\"\n"
+			+ "3,\"two\nlines\",c\n"
+			+ "4,\"\n\",\"x\n\ny\"\n"
+			+ "5,plain,\"q\"\n");
+		List<String> rows = rows (record (f,",","\n"));
+		check (rows.size() == 5,"rows " + rows);
+		if (rows.size() < 5) return;
+		check (rows.get (0).equals ("[1, say \"hi\", \"]"),"doubled quote " + rows.get (0));
+		check (rows.get (1).equals ("[2, a,b, ,]"),"column delimiter " + rows.get (1));
+		check (rows.get (2).equals ("[3, two\nlines, c]"),"row delimiter " + rows.get (2));
+		check (rows.get (3).equals ("[4, \n, x\n\ny]"),"row delimiters " + rows.get (3));
+		check (rows.get (4).equals ("[5, plain, q]"),"unquoted " + rows.get (4));
+		}
+
+	/**
+	 * Quote a value as in RFC 4180.
+	 */
+
+	protected static String quoted (String value) {
+		return "\"" + value.replace ("\"","\"\"") + "\"";
+		}
+
+	/**
+	 * Rows whose quoted fields hold quotes and both delimiters, of lengths
+	 * that put the delimiters at every offset of a 1024 character buffer,
+	 * with some fields longer than the buffer.
+	 */
+
+	protected static void fills (String colDelimiter,String rowDelimiter) throws Exception {
+		Random random = new Random (rowDelimiter.hashCode());
+		String[] pieces = { "\"", colDelimiter, rowDelimiter, "x", "y", "z", " ", "\u00e9", "\u20ac" };
+		StringBuilder text = new StringBuilder();
+		List<String> expected = new ArrayList<>();
+		for (int id=1; id<=1500; ++id) {
+			int length = (id <= 1100) ? id : (id % 100 == 0) ? 3000 : 1 + random.nextInt (60);
+			StringBuilder a = new StringBuilder();
+			while (a.length() < length) a.append (pieces[random.nextInt (pieces.length)]);
+			String b = "b" + id;
+			text.append (id).append (colDelimiter).append (quoted (a.toString())).append (colDelimiter);
+			text.append ((id % 3 == 0) ? quoted (b) : b).append (rowDelimiter);
+			expected.add (Arrays.deepToString (new Object[] { id, a.toString(), b }));
+			}
+		File f = write (text.toString());
+		String what = colDelimiter + " " + rowDelimiter.replace ("\r","\\r").replace ("\n","\\n");
+		for (ReadMode mode: ReadMode.values()) {
+			same (rows (record (f,colDelimiter,rowDelimiter).readMode (mode).bufferSize (1024)),expected,mode + " " + what);
+			}
+		same (rows (record (f,colDelimiter,rowDelimiter).bufferSize (1024).pipeline (64)),expected,"pipeline() " + what);
+		}
+
+	protected static void same (List<String> rows,List<String> expected,String what) {
+		check (rows.size() == expected.size(),what + " rows " + rows.size() + ", expected " + expected.size());
+		for (int i=0; i<Math.min (rows.size(),expected.size()); ++i) {
+			if (rows.get (i).equals (expected.get (i))) continue;
+			check (false,what + " row " + (i + 1));
+			return;
+			}
+		}
+
+	/**
+	 * A quote still open at the end of the file is an error, rather than a
+	 * value running to the end of the file.
+	 */
+
+	protected static void unterminated() throws Exception {
+		String[] texts = { "1,a,b\n2,\"open,c\n3,d,e\n", "1,a,b\n2,c,\"open\n", "1,a,b\n2,c,\"open" };
+		for (String text: texts) {
+			File f = write (text);
+			for (ReadMode mode: ReadMode.values()) {
+				String message = null;
+				try {
+					rows (record (f,",","\n").readMode (mode));
+					}
+				catch (Exception e) {
+					message = e.getMessage();
+					}
+				check (message != null && message.contains ("not closed"),mode + " unterminated " + text.replace ("\n","\\n") + " gave " + message);
+				}
+			}
+		}
+
+	}
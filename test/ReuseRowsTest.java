@@ -0,0 +1,81 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests that reuseRows(), alone and with columnar(), returns the same
+ * rows as a record without it, in each ReadMode and with parallel() and
+ * pipeline(). Run with the driver on the class path:
+ *
+ *     java SQLServerBulkRecordDelimited.ReuseRowsTest
+ *
+ * Exits with status 1 if any check fails.
+ */
+
+public class ReuseRowsTest {
+
+	protected static int checks = 0;
+	protected static int failures = 0;
+
+	public static void main (String[] args) throws Exception {
+		File f = File.createTempFile ("ReuseRowsTest",".txt");
+		f.deleteOnExit();
+		FileGenerator generator = new FileGenerator().rows (20000).multibyte (0.2).nullDensity (0.1).seed (11);
+		generator.write (f.getPath());
+		String fileName = f.getPath();
+
+		List<String> expected = rows (generator.record (fileName));
+		check (expected.size() == 20000,"rows " + expected.size());
+
+		for (ReadMode mode: ReadMode.values()) {
+			check (rows (generator.record (fileName).readMode (mode).reuseRows()).equals (expected),mode + " reuseRows()");
+			check (rows (generator.record (fileName).readMode (mode).columnar (1024).reuseRows()).equals (expected),mode + " columnar() reuseRows()");
+			check (sameArray (generator.record (fileName).readMode (mode).reuseRows()),mode + " reuseRows() array");
+			}
+		check (rows (generator.record (fileName).parallel (4).reuseRows()).equals (expected),"parallel() reuseRows()");
+		check (rows (generator.record (fileName).pipeline (256).reuseRows()).equals (expected),"pipeline() reuseRows()");
+
+		System.out.println (String.format ("%d checks, %d failed",checks,failures));
+		System.exit ((failures > 0) ? 1 : 0);
+		}
+
+	protected static void check (boolean ok,String what) {
+		++ checks;
+		if (ok) return;
+		++ failures;
+		System.out.println ("FAILED " + what);
+		}
+
+	/**
+	 * Read every row of a record as SQLServerBulkCopy does, taking each row
+	 * as text before asking for the next.
+	 */
+
+	protected static List<String> rows (SQLServerBulkRecordDelimited record) throws Exception {
+		List<String> rows = new ArrayList<>();
+		try (SQLServerBulkRecordDelimited r = record.open()) {
+			while (r.next()) rows.add (Arrays.deepToString (r.getRowData()));
+			}
+		return rows;
+		}
+
+	/**
+	 * @return true if getRowData() returns the one array for every row
+	 */
+
+	protected static boolean sameArray (SQLServerBulkRecordDelimited record) throws Exception {
+		try (SQLServerBulkRecordDelimited r = record.open()) {
+			Object[] first = null;
+			while (r.next()) {
+				Object[] row = r.getRowData();
+				if (first == null) first = row;
+				else if (row != first) return false;
+				}
+			return first != null;
+			}
+		}
+
+	}
@@ -0,0 +1,96 @@
+package SQLServerBulkRecordDelimited;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests that a row cache is replayed only for a load that would convert
+ * the same values. Run with the driver on the class path:
+ *
+ *     java SQLServerBulkRecordDelimited.RowCacheTest
+ *
+ * Exits with status 1 if any check fails.
+ */
+
+public class RowCacheTest {
+
+	protected static int checks = 0;
+	protected static int failures = 0;
+
+	public static void main (String[] args) throws Exception {
+		customConverters();
+		System.out.println (String.format ("%d checks, %d failed",checks,failures));
+		System.exit ((failures > 0) ? 1 : 0);
+		}
+
+	protected static void check (boolean ok,String what) {
+		++ checks;
+		if (ok) return;
+		++ failures;
+		System.out.println ("FAILED " + what);
+		}
+
+	protected static File tempFile (String suffix) throws Exception {
+		File f = File.createTempFile ("RowCacheTest",suffix);
+		f.deleteOnExit();
+		return f;
+		}
+
+	/**
+	 * Load a record, noting whether it was replayed from the cache.
+	 */
+
+	protected static List<String> load (SQLServerBulkRecordDelimited record,boolean[] replayed) throws Exception {
+		List<String> rows = new ArrayList<>();
+		try (SQLServerBulkRecordDelimited r = record.open()) {
+			replayed[0] = (r.cacheRecord != null);
+			while (r.next()) rows.add (Arrays.deepToString (r.getRowData()));
+			}
+		return rows;
+		}
+
+	/**
+	 * Lambdas of one class cannot be told apart, so a custom converter
+	 * needs a key, and a new key writes the cache again.
+	 */
+
+	protected static void customConverters() throws Exception {
+		File data = tempFile (".txt");
+		Files.write (data.toPath(),"1|abc\n2|def\n".getBytes (StandardCharsets.UTF_8));
+		File cache = tempFile (".bin");
+		cache.delete();
+		ColumnConverter upper = (row,start,end) -> row.subSequence (start,end).toString().toUpperCase();
+		ColumnConverter reverse = (row,start,end) -> new StringBuilder (row.subSequence (start,end)).reverse().toString();
+		boolean[] replayed = new boolean[1];
+
+		boolean refused = false;
+		try {
+			load (new SQLServerBulkRecordDelimited().fileName (data.getPath()).colDelimiter ("|").column ("a",Types.INTEGER).column ("b",Types.VARCHAR,upper).cache (cache.getPath()),replayed);
+			}
+		catch (Exception e) {
+			refused = e.getMessage().contains ("key");
+			}
+		check (refused,"custom converter without a key refused");
+
+		List<String> rows = load (new SQLServerBulkRecordDelimited().fileName (data.getPath()).colDelimiter ("|").column ("a",Types.INTEGER).column ("b",Types.VARCHAR,upper).cache (cache.getPath(),"upper"),replayed);
+		check (!replayed[0] && rows.toString().equals ("[[1, ABC], [2, DEF]]"),"upper written " + rows);
+		rows = load (new SQLServerBulkRecordDelimited().fileName (data.getPath()).colDelimiter ("|").column ("a",Types.INTEGER).column ("b",Types.VARCHAR,upper).cache (cache.getPath(),"upper"),replayed);
+		check (replayed[0] && rows.toString().equals ("[[1, ABC], [2, DEF]]"),"upper replayed " + rows);
+		rows = load (new SQLServerBulkRecordDelimited().fileName (data.getPath()).colDelimiter ("|").column ("a",Types.INTEGER).column ("b",Types.VARCHAR,reverse).cache (cache.getPath(),"reverse"),replayed);
+		check (!replayed[0] && rows.toString().equals ("[[1, cba], [2, fed]]"),"reverse written " + rows);
+
+		// Converters of ColumnConverters are known by their class
+		File hex = tempFile (".txt");
+		Files.write (hex.toPath(),"1|0x0A0B\n".getBytes (StandardCharsets.UTF_8));
+		cache.delete();
+		load (new SQLServerBulkRecordDelimited().fileName (hex.getPath()).colDelimiter ("|").column ("a",Types.INTEGER).column ("b",Types.VARBINARY,ColumnConverters.hexBinary()).cache (cache.getPath()),replayed);
+		rows = load (new SQLServerBulkRecordDelimited().fileName (hex.getPath()).colDelimiter ("|").column ("a",Types.INTEGER).column ("b",Types.VARBINARY,ColumnConverters.hexBinary()).cache (cache.getPath()),replayed);
+		check (replayed[0] && rows.toString().equals ("[[1, [10, 11]]]"),"hexBinary replayed " + rows);
+		}
+
+	}
@@ -0,0 +1,83 @@
+package SQLServerBulkRecordDelimited;
+
+import java.sql.Types;
+import java.text.SimpleDateFormat;
+
+/**
+ * Tests of TemporalParser against SimpleDateFormat, which parsed dates
+ * and times before it. Run with:
+ *
+ *     java SQLServerBulkRecordDelimited.TemporalParserTest
+ *
+ * Exits with status 1 if any check fails.
+ */
+
+public class TemporalParserTest {
+
+	protected static int checks = 0;
+	protected static int failures = 0;
+
+	public static void main (String[] args) throws Exception {
+		twoDigitYears();
+		timeMillis();
+		System.out.println (String.format ("%d checks, %d failed",checks,failures));
+		System.exit ((failures > 0) ? 1 : 0);
+		}
+
+	protected static void check (boolean ok,String what) {
+		++ checks;
+		if (ok) return;
+		++ failures;
+		System.out.println ("FAILED " + what);
+		}
+
+	protected static Object parse (String format,int type,String value) {
+		return new TemporalParser (format,type).parse (value,0,value.length());
+		}
+
+	/**
+	 * Check a value parses to the same instant as with SimpleDateFormat.
+	 */
+
+	protected static void same (String format,int type,String value) throws Exception {
+		long expected = new SimpleDateFormat (format).parse (value).getTime();
+		Object o = parse (format,type,value);
+		check (((java.util.Date) o).getTime() == expected,format + " " + value + " gave " + o);
+		}
+
+	/**
+	 * A year of one or two digits read by y or yy falls within 80 years
+	 * before and 20 after now, and other years are read as written.
+	 */
+
+	protected static void twoDigitYears() throws Exception {
+		String[] dates = { "20-01-02", "99-12-31", "00-06-15", "45-03-04", "2020-01-02", "1999-12-31", "0099-12-31" };
+		for (String format: new String[] { "y-M-d", "yy-MM-dd" }) {
+			for (String value: dates) same (format,Types.DATE,value);
+			}
+		for (String value: new String[] { "20-01-02", "99-12-31", "2020-01-02", "0099-12-31" }) same ("yyyy-MM-dd",Types.DATE,value);
+		for (String value: new String[] { "02/01/20", "31/12/99", "31/12/1999" }) same ("dd/MM/yy",Types.DATE,value);
+		for (String value: new String[] { "20-01-02 03:04:05", "99-12-31 23:59:58", "2020-01-02 03:04:05" }) same ("y-M-d H:m:s",Types.TIMESTAMP,value);
+		same ("yyMMdd",Types.DATE,"991231");
+		same ("'y'yy-MM-dd",Types.DATE,"y99-12-31");
+
+		// Optional sections either side of the year
+		check (parse ("yy-MM-dd[ HH:mm]",Types.TIMESTAMP,"99-12-31 10:30").toString().equals ("1999-12-31 10:30:00.0"),"optional time");
+		check (parse ("yy-MM-dd[ HH:mm]",Types.TIMESTAMP,"99-12-31").toString().equals ("1999-12-31 00:00:00.0"),"optional time absent");
+		check (parse ("[dd/MM/]yy",Types.DATE,"31/12/99").toString().equals ("1999-12-31"),"optional day");
+		}
+
+	/**
+	 * TIME values keep their milliseconds, through the formatter and the
+	 * ISO fast path alike.
+	 */
+
+	protected static void timeMillis() throws Exception {
+		same ("HH:mm:ss.SSS",Types.TIME,"12:34:56.789");
+		same ("H:m:s.S",Types.TIME,"12:34:56.789");
+		same ("HH:mm:ss",Types.TIME,"12:34:56");
+		check (Math.floorMod (((java.sql.Time) parse ("H:m:s",Types.TIME,"12:34:56.789")).getTime(),1000) == 789,"fast path millis");
+		check (Math.floorMod (((java.sql.Time) parse ("h:mm:ss.SSS a",Types.TIME,"1:02:03.045 PM")).getTime(),1000) == 45,"formatted millis");
+		}
+
+	}